@@ -3,15 +3,22 @@ package com.deadside.bot.bot;
 import com.deadside.bot.commands.CommandManager;
 import com.deadside.bot.config.Config;
 import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.events.EventDispatcher;
 import com.deadside.bot.listeners.ButtonListener;
 import com.deadside.bot.listeners.CommandListener;
 import com.deadside.bot.listeners.StringSelectMenuListener;
+import com.deadside.bot.local.LocalLogWatcher;
 import com.deadside.bot.parsers.DeadsideCsvParser;
 import com.deadside.bot.parsers.DeadsideLogParser;
+import com.deadside.bot.parsers.DeathlogBackfill;
+import com.deadside.bot.schedulers.IngestionPool;
 import com.deadside.bot.schedulers.KillfeedScheduler;
 import com.deadside.bot.db.repositories.GameServerRepository;
 import com.deadside.bot.db.repositories.PlayerRepository;
+import com.deadside.bot.sftp.ServerCircuitBreaker;
 import com.deadside.bot.sftp.SftpConnector;
+import com.deadside.bot.sftp.SftpSessionPool;
+import com.deadside.bot.utils.OutboundScheduler;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.OnlineStatus;
@@ -23,6 +30,7 @@ import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.Executors;
@@ -38,10 +46,11 @@ public class DeadsideBot {
     private final String token;
     private JDA jda;
     private CommandManager commandManager;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3);
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5);
     private KillfeedScheduler killfeedScheduler;
     private DeadsideLogParser logParser;
     private DeadsideCsvParser csvParser;
+    private LocalLogWatcher localLogWatcher;
     
     public DeadsideBot(String token) {
         this.token = token;
@@ -116,10 +125,24 @@ public class DeadsideBot {
                 TimeUnit.SECONDS
         );
         
+        // Poll followed killfeeds for appended bytes between regular updates
+        int followInterval = config.getKillfeedFollowInterval();
+        if (followInterval > 0) {
+            scheduler.scheduleAtFixedRate(
+                    killfeedScheduler::followServers,
+                    2,
+                    followInterval,
+                    TimeUnit.SECONDS
+            );
+            logger.info("Polling followed killfeeds every {} seconds", followInterval);
+        }
+        
         // Initialize common dependencies for parsers
         GameServerRepository gameServerRepository = new GameServerRepository();
         PlayerRepository playerRepository = new PlayerRepository();
         SftpConnector sftpConnector = new SftpConnector();
+        ServerCircuitBreaker circuitBreaker = ServerCircuitBreaker.getInstance();
+        IngestionPool ingestionPool = IngestionPool.getInstance();
         
         // Initialize and start log parser
         logParser = new DeadsideLogParser(jda, gameServerRepository, sftpConnector);
@@ -141,10 +164,21 @@ public class DeadsideBot {
         scheduler.scheduleAtFixedRate(
                 () -> {
                     try {
-                        List<GameServer> servers = gameServerRepository.findAll();
-                        for (GameServer server : servers) {
-                            csvParser.processDeathLogs(server);
+                        List<GameServer> servers = new ArrayList<>();
+                        for (GameServer server : gameServerRepository.findAll()) {
+                            // Local servers are handled by the local log watcher
+                            if (!server.isLocal()) {
+                                servers.add(server);
+                            }
                         }
+                        
+                        ingestionPool.runCycle("CSV death log parsing", servers, server -> {
+                            // Skip unreachable servers until their backoff has passed
+                            if (!circuitBreaker.allowRequest(server, () -> sftpConnector.testConnection(server))) {
+                                return 0;
+                            }
+                            return csvParser.processDeathLogs(server);
+                        });
                     } catch (Exception e) {
                         logger.error("Error processing CSV death logs: {}", e.getMessage(), e);
                     }
@@ -154,6 +188,35 @@ public class DeadsideBot {
                 TimeUnit.SECONDS
         );
         
+        // Parse the logs of servers on this machine as soon as they change
+        try {
+            localLogWatcher = new LocalLogWatcher(
+                    logParser::processServerLog,
+                    server -> {
+                        csvParser.processDeathLogs(server);
+                        killfeedScheduler.processServer(server);
+                    },
+                    config.getLocalWatchDebounce()
+            );
+            localLogWatcher.start();
+            
+            // Pick up added and removed local servers, and catch up in case an event was missed
+            scheduler.scheduleAtFixedRate(
+                    () -> {
+                        try {
+                            localLogWatcher.sync(gameServerRepository.findAll());
+                        } catch (Exception e) {
+                            logger.error("Error syncing local log watcher: {}", e.getMessage(), e);
+                        }
+                    },
+                    5,
+                    logParserInterval,
+                    TimeUnit.SECONDS
+            );
+        } catch (Exception e) {
+            logger.error("Failed to start local log watcher, local servers will not be parsed", e);
+        }
+        
         logger.info("Scheduled killfeed updates every {} seconds", killfeedInterval);
         logger.info("Scheduled log parsing every {} seconds", logParserInterval);
         logger.info("Scheduled CSV death log parsing every {} seconds", csvParserInterval);
@@ -174,6 +237,23 @@ public class DeadsideBot {
             Thread.currentThread().interrupt();
         }
         
+        if (localLogWatcher != null) {
+            localLogWatcher.stop();
+        }
+        
+        logger.info("Waiting for running ingestion tasks...");
+        IngestionPool.getInstance().shutdown();
+        
+        logger.info("Stopping running backfills...");
+        DeathlogBackfill.getInstance().shutdown();
+        
+        logger.info("Delivering queued events...");
+        EventDispatcher.getInstance().shutdown();
+        OutboundScheduler.getInstance().shutdown();
+        
+        logger.info("Closing pooled SFTP sessions...");
+        SftpSessionPool.getInstance().shutdown();
+        
         logger.info("Shutting down JDA...");
         if (jda != null) {
             jda.shutdown();
@@ -2,10 +2,17 @@ package com.deadside.bot.commands.admin;
 
 import com.deadside.bot.commands.ICommand;
 import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.BackfillCheckpoint;
 import com.deadside.bot.db.models.GameServer;
 import com.deadside.bot.db.models.GuildConfig;
 import com.deadside.bot.db.repositories.GameServerRepository;
 import com.deadside.bot.db.repositories.GuildConfigRepository;
+import com.deadside.bot.db.repositories.IngestionCheckpointRepository;
+import com.deadside.bot.events.ServerInterner;
+import com.deadside.bot.local.LocalFileConnector;
+import com.deadside.bot.parsers.DeathlogBackfill;
+import com.deadside.bot.premium.PremiumManager;
+import com.deadside.bot.sftp.ServerCircuitBreaker;
 import com.deadside.bot.sftp.SftpManager;
 import com.deadside.bot.utils.EmbedUtils;
 import net.dv8tion.jda.api.Permission;
@@ -32,7 +39,12 @@ public class ServerCommand implements ICommand {
     private static final Logger logger = LoggerFactory.getLogger(ServerCommand.class);
     private final GameServerRepository serverRepository = new GameServerRepository();
     private final GuildConfigRepository guildConfigRepository = new GuildConfigRepository();
+    private final IngestionCheckpointRepository checkpointRepository = new IngestionCheckpointRepository();
     private final SftpManager sftpManager = new SftpManager();
+    private final LocalFileConnector localConnector = new LocalFileConnector();
+    private final PremiumManager premiumManager = new PremiumManager();
+    private final ServerCircuitBreaker circuitBreaker = ServerCircuitBreaker.getInstance();
+    private final DeathlogBackfill backfill = DeathlogBackfill.getInstance();
     
     @Override
     public String getName() {
@@ -51,6 +63,11 @@ public class ServerCommand implements ICommand {
                                 .addOption(OptionType.STRING, "username", "SFTP username", true)
                                 .addOption(OptionType.STRING, "password", "SFTP password", true)
                                 .addOption(OptionType.INTEGER, "gameserver", "Game server ID", true),
+                        new SubcommandData("addlocal", "Add a game server running on the same machine as the bot (bot owner only)")
+                                .addOption(OptionType.STRING, "name", "The name of the server", true)
+                                .addOption(OptionType.STRING, "path", "Local directory laid out like the SFTP home directory", true)
+                                .addOption(OptionType.INTEGER, "gameserver", "Game server ID", true)
+                                .addOption(OptionType.STRING, "host", "Host name used in the log directory name (default: localhost)", false),
                         new SubcommandData("remove", "Remove a game server")
                                 .addOption(OptionType.STRING, "name", "The name of the server to remove", true),
                         new SubcommandData("list", "List all configured game servers"),
@@ -61,7 +78,13 @@ public class ServerCommand implements ICommand {
                                 .addOption(OptionType.CHANNEL, "channel", "Channel for killfeed updates", true),
                         new SubcommandData("setlogs", "Set the server log channel for events")
                                 .addOption(OptionType.STRING, "name", "The name of the server", true)
-                                .addOption(OptionType.CHANNEL, "channel", "Channel for server events and player join/leave logs", true)
+                                .addOption(OptionType.CHANNEL, "channel", "Channel for server events and player join/leave logs", true),
+                        new SubcommandData("follow", "Follow the killfeed in near real time (premium)")
+                                .addOption(OptionType.STRING, "name", "The name of the server", true)
+                                .addOption(OptionType.BOOLEAN, "enabled", "Whether follow mode is enabled", true),
+                        new SubcommandData("status", "Show whether each game server is reachable"),
+                        new SubcommandData("backfill", "Import the kill history of a server without posting it, or show the import's progress")
+                                .addOption(OptionType.STRING, "name", "The name of the server", true)
                 );
     }
     
@@ -87,11 +110,15 @@ public class ServerCommand implements ICommand {
         try {
             switch (subCommand) {
                 case "add" -> addServer(event);
+                case "addlocal" -> addLocalServer(event);
                 case "remove" -> removeServer(event);
                 case "list" -> listServers(event);
                 case "test" -> testServerConnection(event);
                 case "setkillfeed" -> setKillfeed(event);
                 case "setlogs" -> setLogs(event);
+                case "follow" -> setFollow(event);
+                case "status" -> showStatus(event);
+                case "backfill" -> backfill(event);
                 default -> event.reply("Unknown subcommand: " + subCommand).setEphemeral(true).queue();
             }
         } catch (Exception e) {
@@ -168,6 +195,68 @@ public class ServerCommand implements ICommand {
         }
     }
     
+    private void addLocalServer(SlashCommandInteractionEvent event) {
+        Guild guild = event.getGuild();
+        if (guild == null) return;
+        
+        String name = event.getOption("name", OptionMapping::getAsString);
+        String path = event.getOption("path", OptionMapping::getAsString);
+        int gameServerId = event.getOption("gameserver", OptionMapping::getAsInt);
+        String host = event.getOption("host", "localhost", OptionMapping::getAsString);
+        
+        // Reading files on the bot's machine is up to its owner, not to every guild's administrators
+        if (event.getUser().getIdLong() != Config.getInstance().getBotOwnerId()) {
+            event.reply("Only the bot owner can add local servers.").setEphemeral(true).queue();
+            return;
+        }
+        
+        // Acknowledge the command immediately
+        event.deferReply(true).queue();
+        
+        // Check if guild config exists, create if not
+        GuildConfig guildConfig = guildConfigRepository.findByGuildId(guild.getIdLong());
+        if (guildConfig == null) {
+            guildConfig = new GuildConfig(guild.getIdLong());
+            guildConfigRepository.save(guildConfig);
+        }
+        
+        // Check if server already exists
+        if (serverRepository.findByGuildIdAndName(guild.getIdLong(), name) != null) {
+            event.getHook().sendMessage("A server with this name already exists.").queue();
+            return;
+        }
+        
+        // Create new server without SFTP credentials
+        GameServer gameServer = new GameServer(guild.getIdLong(), name, host, 0, "", "", gameServerId);
+        gameServer.setSourceType(GameServer.SOURCE_LOCAL);
+        gameServer.setLocalPath(path);
+        
+        try {
+            // One reply for missing, unreadable and disallowed directories, so the reply tells nothing about the host
+            if (!localConnector.testConnection(gameServer)) {
+                event.getHook().sendMessage("The directory " + path + " cannot be used for a local server.").queue();
+                return;
+            }
+            
+            serverRepository.save(gameServer);
+            
+            event.getHook().sendMessageEmbeds(
+                    EmbedUtils.successEmbed("Local Server Added", 
+                            "Successfully added local server **" + name + "**\n" +
+                            "Path: " + path + "\n" +
+                            "Game Server ID: " + gameServerId + "\n\n" +
+                            "You can set a killfeed channel with `/server setkillfeed " + name + " #channel`\n" +
+                            "Logs are parsed as soon as they change.\n" +
+                            "The bot will look for deathlogs in: " + localConnector.resolve(gameServer, gameServer.getDeathlogsDirectory()))
+            ).queue();
+            
+            logger.info("Added new local game server '{}' at {} for guild {}", name, path, guild.getId());
+        } catch (Exception e) {
+            logger.error("Error adding local server", e);
+            event.getHook().sendMessage("Error adding server: " + e.getMessage()).queue();
+        }
+    }
+    
     private void setKillfeed(SlashCommandInteractionEvent event) {
         Guild guild = event.getGuild();
         if (guild == null) return;
@@ -205,6 +294,9 @@ public class ServerCommand implements ICommand {
         
         // Remove the server
         serverRepository.delete(server);
+        // A server added again under the same name starts from scratch
+        checkpointRepository.deleteByServer(server.getGuildId(), server.getName());
+        ServerInterner.remove(server);
         
         event.reply("Server **" + name + "** has been removed.").queue();
         logger.info("Removed game server '{}' from guild {}", name, guild.getId());
@@ -226,7 +318,11 @@ public class ServerCommand implements ICommand {
         StringBuilder description = new StringBuilder();
         for (GameServer server : servers) {
             description.append("**").append(server.getName()).append("**\n");
-            description.append("Host: ").append(server.getHost()).append("\n");
+            if (server.isLocal()) {
+                description.append("Local Path: ").append(server.getLocalPath()).append("\n");
+            } else {
+                description.append("Host: ").append(server.getHost()).append("\n");
+            }
             description.append("Killfeed Channel: <#").append(server.getKillfeedChannelId()).append(">\n\n");
         }
         
@@ -253,7 +349,9 @@ public class ServerCommand implements ICommand {
         
         // Test the connection
         try {
-            boolean result = sftpManager.testConnection(server);
+            boolean result = server.isLocal()
+                    ? localConnector.testConnection(server)
+                    : sftpManager.testConnection(server);
             
             if (result) {
                 event.getHook().sendMessageEmbeds(
@@ -303,4 +401,110 @@ public class ServerCommand implements ICommand {
                 "You will now receive notifications for player joins/leaves and server events.").queue();
         logger.info("Updated log channel for server '{}' to {}", serverName, channel.getId());
     }
-}
+    
+    private void setFollow(SlashCommandInteractionEvent event) {
+        Guild guild = event.getGuild();
+        if (guild == null) return;
+        
+        String serverName = event.getOption("name", OptionMapping::getAsString);
+        boolean enabled = event.getOption("enabled", OptionMapping::getAsBoolean);
+        
+        // Look up the server
+        GameServer server = serverRepository.findByGuildIdAndName(guild.getIdLong(), serverName);
+        if (server == null) {
+            event.reply("No server found with name: " + serverName).setEphemeral(true).queue();
+            return;
+        }
+        
+        if (enabled && !premiumManager.hasPremium(guild.getIdLong())) {
+            event.reply("Killfeed follow mode is a premium feature.").setEphemeral(true).queue();
+            return;
+        }
+        
+        if (enabled && server.isLocal()) {
+            event.reply("Local servers are already parsed as soon as their logs change.").setEphemeral(true).queue();
+            return;
+        }
+        
+        server.setKillfeedFollow(enabled);
+        serverRepository.save(server);
+        
+        event.reply("Killfeed follow mode for **" + serverName + "** has been " + (enabled ? "enabled" : "disabled") + ". " +
+                "Changes take effect within a minute.").queue();
+        logger.info("Set killfeed follow mode for server '{}' to {}", serverName, enabled);
+    }
+    
+    private void showStatus(SlashCommandInteractionEvent event) {
+        Guild guild = event.getGuild();
+        if (guild == null) return;
+        
+        List<GameServer> servers = serverRepository.findAllByGuildId(guild.getIdLong());
+        if (servers.isEmpty()) {
+            event.reply("No game servers have been configured for this Discord server.").queue();
+            return;
+        }
+        
+        StringBuilder description = new StringBuilder();
+        for (GameServer server : servers) {
+            description.append("**").append(server.getName()).append("**\n");
+            if (server.isLocal()) {
+                description.append("Status: Local\n\n");
+                continue;
+            }
+            
+            switch (circuitBreaker.getState(server)) {
+                case CLOSED -> description.append("Status: Reachable\n");
+                case HALF_OPEN -> description.append("Status: Probing\n");
+                case OPEN -> description.append("Status: Unreachable, next attempt <t:")
+                        .append(circuitBreaker.getRetryAt(server) / 1000).append(":R>\n");
+            }
+            
+            int failures = circuitBreaker.getFailures(server);
+            if (failures > 0) {
+                description.append("Consecutive failures: ").append(failures).append("\n");
+            }
+            String lastError = circuitBreaker.getLastError(server);
+            if (lastError != null) {
+                description.append("Last error: ").append(lastError).append("\n");
+            }
+            description.append("\n");
+        }
+        
+        event.replyEmbeds(
+                EmbedUtils.infoEmbed("Game Server Status", description.toString())
+        ).setEphemeral(true).queue();
+    }
+    
+    private void backfill(SlashCommandInteractionEvent event) {
+        Guild guild = event.getGuild();
+        if (guild == null) return;
+        
+        String serverName = event.getOption("name", OptionMapping::getAsString);
+        GameServer server = serverRepository.findByGuildIdAndName(guild.getIdLong(), serverName);
+        if (server == null) {
+            event.reply("No server found with name: " + serverName).setEphemeral(true).queue();
+            return;
+        }
+        
+        // Running the command again while the import runs shows its progress
+        DeathlogBackfill.Progress progress = backfill.getProgress(server);
+        if (progress != null) {
+            event.reply("Kill history import for **" + serverName + "** is running: " + progress.describe())
+                    .setEphemeral(true).queue();
+            return;
+        }
+        
+        BackfillCheckpoint checkpoint = backfill.getCheckpoint(server);
+        if (!backfill.start(server)) {
+            event.reply("Kill history import for **" + serverName + "** is already running.").setEphemeral(true).queue();
+            return;
+        }
+        
+        String resume = checkpoint != null && !checkpoint.isCompleted() && !checkpoint.getLastFile().isEmpty()
+                ? " Resuming after " + checkpoint.getLastFile() + "."
+                : "";
+        event.reply("Importing the kill history of **" + serverName + "**. Nothing is posted to the killfeed." + resume +
+                " Run this command again to see the progress.").setEphemeral(true).queue();
+        logger.info("Started kill history backfill for server '{}'", serverName);
+    }
+}
\ No newline at end of file
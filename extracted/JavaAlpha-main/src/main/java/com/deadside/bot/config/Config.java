@@ -24,8 +24,33 @@ public class Config {
     private static final String BOT_OWNER_ID = "bot.owner.id";
     private static final String HOME_GUILD_ID = "bot.home.guild.id";
     private static final String SFTP_CONNECT_TIMEOUT = "sftp.connect.timeout";
+    private static final String SFTP_POOL_MAX_SESSIONS_PER_ACCOUNT = "sftp.pool.max.sessions.per.account";
+    // Former name of the per-account cap, still read so existing configurations keep working
+    private static final String SFTP_POOL_MAX_SESSIONS_PER_HOST = "sftp.pool.max.sessions.per.host";
+    private static final String SFTP_POOL_IDLE_TIMEOUT = "sftp.pool.idle.timeout";
+    private static final String SFTP_KEEPALIVE_INTERVAL = "sftp.keepalive.interval";
+    private static final String SFTP_DEATHLOG_RESYNC_INTERVAL = "sftp.deathlog.resync.interval";
+    private static final String SFTP_PARALLEL_CHANNELS = "sftp.parallel.channels";
+    private static final String SPOOL_DIRECTORY = "spool.directory";
+    private static final String SFTP_HOST_MAX_SESSIONS = "sftp.host.max.sessions";
+    private static final String SFTP_HOST_MAX_CHANNELS = "sftp.host.max.channels";
+    private static final String SFTP_HOST_BANDWIDTH = "sftp.host.bandwidth";
+    private static final String BREAKER_FAILURE_THRESHOLD = "sftp.breaker.failure.threshold";
+    private static final String BREAKER_INITIAL_BACKOFF = "sftp.breaker.backoff.initial";
+    private static final String BREAKER_MAX_BACKOFF = "sftp.breaker.backoff.max";
+    private static final String LOCAL_WATCH_DEBOUNCE = "local.watch.debounce";
+    private static final String LOCAL_ROOT_DIRECTORY = "local.root.directory";
+    private static final String KILLFEED_FOLLOW_INTERVAL = "killfeed.follow.interval";
     private static final String KILLFEED_UPDATE_INTERVAL = "killfeed.update.interval";
     private static final String LOG_PARSING_INTERVAL = "log.parsing.interval";
+    private static final String INGESTION_PARALLELISM = "ingestion.parallelism";
+    private static final String BACKFILL_BATCH_SIZE = "backfill.batch.size";
+    private static final String KILL_DEDUP_CAPACITY = "kill.dedup.capacity";
+    private static final String EVENT_BUS_CAPACITY = "event.bus.capacity";
+    private static final String EVENT_BUS_WAIT_STRATEGY = "event.bus.wait.strategy";
+    private static final String EVENT_BUS_CONSUMER_THREADS = "event.bus.consumer.threads";
+    private static final String EMBED_LINGER_MS = "discord.embed.linger.ms";
+    private static final String DISCORD_GLOBAL_RATE = "discord.global.rate";
     private static final String ECONOMY_DAILY_AMOUNT = "economy.daily.amount";
     private static final String ECONOMY_WORK_MIN_AMOUNT = "economy.work.min.amount";
     private static final String ECONOMY_WORK_MAX_AMOUNT = "economy.work.max.amount";
@@ -137,6 +162,191 @@ public class Config {
         }
     }
 
+    /**
+     * Get the maximum number of pooled SFTP sessions per account, that is per host, port, user and password
+     * The limit across every account on a host is {@link #getSftpHostMaxSessions()}
+     * @return The session cap
+     */
+    public int getSftpPoolMaxSessionsPerAccount() {
+        String max = getProperty(SFTP_POOL_MAX_SESSIONS_PER_ACCOUNT, getProperty(SFTP_POOL_MAX_SESSIONS_PER_HOST, "2"));
+        try {
+            return Math.max(1, Integer.parseInt(max));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid SFTP pool session cap in configuration", e);
+            return 2;
+        }
+    }
+    
+    /**
+     * Get how long an unused pooled SFTP session is kept open
+     * @return The idle timeout in milliseconds
+     */
+    public long getSftpPoolIdleTimeout() {
+        String timeout = getProperty(SFTP_POOL_IDLE_TIMEOUT, "600000"); // Default 10 minutes
+        try {
+            return Long.parseLong(timeout);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid SFTP pool idle timeout in configuration", e);
+            return 600000;
+        }
+    }
+    
+    /**
+     * Get the SSH keepalive interval for pooled SFTP sessions
+     * @return The interval in milliseconds
+     */
+    public int getSftpKeepaliveInterval() {
+        String interval = getProperty(SFTP_KEEPALIVE_INTERVAL, "15000");
+        try {
+            return Integer.parseInt(interval);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid SFTP keepalive interval in configuration", e);
+            return 15000;
+        }
+    }
+
+    /**
+     * Get how often the cached deathlog directory tree is fully re-listed
+     * @return The interval in milliseconds
+     */
+    public long getDeathlogResyncInterval() {
+        String interval = getProperty(SFTP_DEATHLOG_RESYNC_INTERVAL, "1800000"); // Default 30 minutes
+        try {
+            return Long.parseLong(interval);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid deathlog resync interval in configuration", e);
+            return 1800000;
+        }
+    }
+
+    /**
+     * Get how many SFTP channels may be opened on one session for parallel downloads
+     * @return The channel count
+     */
+    public int getSftpParallelChannels() {
+        String channels = getProperty(SFTP_PARALLEL_CHANNELS, "4");
+        try {
+            return Math.max(1, Integer.parseInt(channels));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid SFTP parallel channel count in configuration", e);
+            return 4;
+        }
+    }
+
+    /**
+     * Get how many SSH sessions may be open at once to one host, across all accounts and ports
+     * @return The session limit
+     */
+    public int getSftpHostMaxSessions() {
+        String sessions = getProperty(SFTP_HOST_MAX_SESSIONS, "4");
+        try {
+            return Math.max(1, Integer.parseInt(sessions));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid SFTP host session limit in configuration", e);
+            return 4;
+        }
+    }
+
+    /**
+     * Get how many SFTP channels may be open at once to one host, including each session's primary channel
+     * @return The channel limit
+     */
+    public int getSftpHostMaxChannels() {
+        String channels = getProperty(SFTP_HOST_MAX_CHANNELS, "8");
+        try {
+            return Math.max(1, Integer.parseInt(channels));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid SFTP host channel limit in configuration", e);
+            return 8;
+        }
+    }
+
+    /**
+     * Get the download budget per host
+     * @return The budget in bytes per second, 0 for unlimited
+     */
+    public long getSftpHostBandwidth() {
+        String bandwidth = getProperty(SFTP_HOST_BANDWIDTH, "0");
+        try {
+            return Math.max(0, Long.parseLong(bandwidth));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid SFTP host bandwidth in configuration", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Get how many consecutive connection failures open a server's circuit breaker
+     * @return The failure threshold
+     */
+    public int getBreakerFailureThreshold() {
+        String threshold = getProperty(BREAKER_FAILURE_THRESHOLD, "3");
+        try {
+            return Math.max(1, Integer.parseInt(threshold));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid circuit breaker failure threshold in configuration", e);
+            return 3;
+        }
+    }
+
+    /**
+     * Get how long an unreachable server is first skipped before it is probed
+     * @return The backoff in milliseconds
+     */
+    public long getBreakerInitialBackoff() {
+        String backoff = getProperty(BREAKER_INITIAL_BACKOFF, "60000");
+        try {
+            return Long.parseLong(backoff);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid circuit breaker initial backoff in configuration", e);
+            return 60000;
+        }
+    }
+
+    /**
+     * Get the longest an unreachable server is skipped between probes
+     * @return The backoff in milliseconds
+     */
+    public long getBreakerMaxBackoff() {
+        String backoff = getProperty(BREAKER_MAX_BACKOFF, "1800000"); // Default 30 minutes
+        try {
+            return Long.parseLong(backoff);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid circuit breaker max backoff in configuration", e);
+            return 1800000;
+        }
+    }
+
+    /**
+     * Get the local directory used to mirror remote logs
+     * @return The spool directory, or an empty string if spooling is disabled
+     */
+    public String getSpoolDirectory() {
+        return getProperty(SPOOL_DIRECTORY, "").trim();
+    }
+
+    /**
+     * Get the directory that the paths of local game servers must be inside
+     * @return The directory, or an empty string to allow any path
+     */
+    public String getLocalRootDirectory() {
+        return getProperty(LOCAL_ROOT_DIRECTORY, "").trim();
+    }
+
+    /**
+     * Get how long the local log watcher waits after a change before parsing
+     * @return The debounce delay in milliseconds
+     */
+    public long getLocalWatchDebounce() {
+        String debounce = getProperty(LOCAL_WATCH_DEBOUNCE, "250");
+        try {
+            return Long.parseLong(debounce);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid local watch debounce in configuration", e);
+            return 250;
+        }
+    }
+    
     public int getKillfeedUpdateInterval() {
         String interval = getProperty(KILLFEED_UPDATE_INTERVAL, "300"); // Default 5 minutes in seconds
         try {
@@ -147,6 +357,20 @@ public class Config {
         }
     }
     
+    /**
+     * Get how often followed killfeeds are polled for appended bytes
+     * @return The interval in seconds, 0 disables follow mode
+     */
+    public int getKillfeedFollowInterval() {
+        String interval = getProperty(KILLFEED_FOLLOW_INTERVAL, "5");
+        try {
+            return Integer.parseInt(interval);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid killfeed follow interval in configuration", e);
+            return 5;
+        }
+    }
+    
     /**
      * Get the interval for parsing server logs
      * @return The interval in seconds
@@ -161,6 +385,113 @@ public class Config {
         }
     }
     
+    /**
+     * Get the number of threads that process servers in parallel during a scheduled cycle
+     * @return The number of threads, at least 1
+     */
+    public int getIngestionParallelism() {
+        String parallelism = getProperty(INGESTION_PARALLELISM, "8");
+        try {
+            return Math.max(1, Integer.parseInt(parallelism));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid ingestion parallelism in configuration", e);
+            return 8;
+        }
+    }
+    
+    /**
+     * Get how many kill records a backfill inserts per bulk write
+     * @return The batch size, at least 1
+     */
+    public int getBackfillBatchSize() {
+        String size = getProperty(BACKFILL_BATCH_SIZE, "5000");
+        try {
+            return Math.max(1, Integer.parseInt(size));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid backfill batch size in configuration", e);
+            return 5000;
+        }
+    }
+    
+    /**
+     * Get the number of kills the in-memory duplicate filter remembers
+     * @return The capacity of each of the filter's two generations
+     */
+    public int getKillDedupCapacity() {
+        String capacity = getProperty(KILL_DEDUP_CAPACITY, "1000000");
+        try {
+            return Math.max(1000, Integer.parseInt(capacity));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid kill dedup capacity in configuration", e);
+            return 1000000;
+        }
+    }
+    
+    /**
+     * Get the number of events each server's event queue holds before parsing waits for the sinks
+     * @return The capacity, rounded up to a power of two by the queue
+     */
+    public int getEventBusCapacity() {
+        String capacity = getProperty(EVENT_BUS_CAPACITY, "1024");
+        try {
+            return Math.max(16, Integer.parseInt(capacity));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid event bus capacity in configuration", e);
+            return 1024;
+        }
+    }
+    
+    /**
+     * Get how parsers wait for room in a full event queue: blocking, sleeping, yielding or busy-spin
+     * @return The wait strategy name
+     */
+    public String getEventBusWaitStrategy() {
+        return getProperty(EVENT_BUS_WAIT_STRATEGY, "blocking");
+    }
+    
+    /**
+     * Get the number of threads that hand queued events to the sinks, each serving one server's queue at a time
+     * @return The number of threads, at least 1
+     */
+    public int getEventBusConsumerThreads() {
+        String threads = getProperty(EVENT_BUS_CONSUMER_THREADS, "4");
+        try {
+            return Math.max(1, Integer.parseInt(threads));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid event bus consumer threads in configuration", e);
+            return 4;
+        }
+    }
+    
+    /**
+     * Get how long an embed waits for more embeds to the same channel before it is sent
+     * @return The linger time in milliseconds
+     */
+    public long getEmbedLingerMs() {
+        String linger = getProperty(EMBED_LINGER_MS, "1500");
+        try {
+            return Math.max(0, Long.parseLong(linger));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid embed linger time in configuration", e);
+            return 1500;
+        }
+    }
+    
+    /**
+     * Get how many notification messages per second the bot sends across all channels
+     * Kept below Discord's global limit of 50 requests per second to leave room for command replies
+     * @return The requests per second
+     */
+    public int getDiscordGlobalRate() {
+        String rate = getProperty(DISCORD_GLOBAL_RATE, "40");
+        try {
+            return Math.max(1, Integer.parseInt(rate));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid Discord global rate in configuration", e);
+            return 40;
+        }
+    }
+    
     /**
      * Get the daily reward amount
      * @return The amount of coins given as daily reward
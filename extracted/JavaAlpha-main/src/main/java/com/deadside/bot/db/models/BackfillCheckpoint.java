@@ -0,0 +1,127 @@
+package com.deadside.bot.db.models;
+
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.types.ObjectId;
+
+/**
+ * Progress of a historical death log backfill for one game server
+ * Saved after every file, so an interrupted backfill resumes with the file after lastFile
+ */
+public class BackfillCheckpoint {
+    @BsonId
+    private ObjectId id;
+    private long guildId;
+    private String serverName;
+    // Kills at or after this time (epoch milliseconds) are left to the live killfeed
+    private long until;
+    // Name of the last file written completely, relative to the deathlogs directory
+    private String lastFile;
+    private int filesProcessed;
+    private long killsWritten;
+    private boolean completed;
+    private long startedAt;
+    private long updatedAt;
+
+    public BackfillCheckpoint() {
+        // Required for MongoDB POJO codec
+    }
+
+    public BackfillCheckpoint(long guildId, String serverName, long until) {
+        this.guildId = guildId;
+        this.serverName = serverName;
+        this.until = until;
+        this.lastFile = "";
+        this.startedAt = System.currentTimeMillis();
+        this.updatedAt = this.startedAt;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public void setId(ObjectId id) {
+        this.id = id;
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public void setGuildId(long guildId) {
+        this.guildId = guildId;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public void setServerName(String serverName) {
+        this.serverName = serverName;
+    }
+
+    public long getUntil() {
+        return until;
+    }
+
+    public void setUntil(long until) {
+        this.until = until;
+    }
+
+    public String getLastFile() {
+        return lastFile;
+    }
+
+    public void setLastFile(String lastFile) {
+        this.lastFile = lastFile;
+    }
+
+    public int getFilesProcessed() {
+        return filesProcessed;
+    }
+
+    public void setFilesProcessed(int filesProcessed) {
+        this.filesProcessed = filesProcessed;
+    }
+
+    public long getKillsWritten() {
+        return killsWritten;
+    }
+
+    public void setKillsWritten(long killsWritten) {
+        this.killsWritten = killsWritten;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Record a file as written completely
+     */
+    public void fileDone(String file, int kills) {
+        this.lastFile = file;
+        this.filesProcessed++;
+        this.killsWritten += kills;
+        this.updatedAt = System.currentTimeMillis();
+    }
+}
@@ -1,12 +1,17 @@
 package com.deadside.bot.db.models;
 
 import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.bson.types.ObjectId;
 
 /**
  * Database model for a Deadside game server
  */
 public class GameServer {
+    // Where the server's logs are read from
+    public static final String SOURCE_SFTP = "sftp";
+    public static final String SOURCE_LOCAL = "local";
+    
     @BsonId
     private ObjectId id;
     private long guildId;
@@ -23,6 +28,9 @@ public class GameServer {
     private String lastProcessedLogFile;
     private long lastProcessedLogLine;
     private long lastProcessedTimestamp;
+    private String sourceType;
+    private String localPath;
+    private boolean killfeedFollow;
     
     public GameServer() {
         // Required for MongoDB POJO codec
@@ -44,6 +52,7 @@ public class GameServer {
         this.lastProcessedLogFile = "";
         this.lastProcessedLogLine = 0;
         this.lastProcessedTimestamp = System.currentTimeMillis();
+        this.sourceType = SOURCE_SFTP;
     }
     
     public ObjectId getId() {
@@ -179,6 +188,42 @@ public class GameServer {
         this.lastProcessedTimestamp = lastProcessedTimestamp;
     }
     
+    public String getSourceType() {
+        // Servers stored before local sources existed are always SFTP
+        return sourceType == null ? SOURCE_SFTP : sourceType;
+    }
+    
+    public void setSourceType(String sourceType) {
+        this.sourceType = sourceType;
+    }
+    
+    /**
+     * Directory the logs of a local server are read from, laid out like the SFTP account's home directory
+     */
+    public String getLocalPath() {
+        return localPath;
+    }
+    
+    public void setLocalPath(String localPath) {
+        this.localPath = localPath;
+    }
+    
+    /**
+     * Whether the killfeed is followed in near real time instead of on the regular schedule
+     */
+    public boolean isKillfeedFollow() {
+        return killfeedFollow;
+    }
+    
+    public void setKillfeedFollow(boolean killfeedFollow) {
+        this.killfeedFollow = killfeedFollow;
+    }
+    
+    @BsonIgnore
+    public boolean isLocal() {
+        return SOURCE_LOCAL.equals(sourceType);
+    }
+    
     public void updateKillfeedProgress(String file, long line) {
         this.lastProcessedKillfeedFile = file;
         this.lastProcessedKillfeedLine = line;
@@ -0,0 +1,143 @@
+package com.deadside.bot.db.models;
+
+import com.deadside.bot.sftp.FileTail;
+import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonIgnore;
+import org.bson.types.ObjectId;
+
+/**
+ * How far a parser has read the logs of one kind on a game server
+ * There is one checkpoint per server and source; it names the file being read, the offset just past
+ * the last line that was processed, and the file's size, mtime and leading bytes when it was saved,
+ * so a restart continues where the previous run stopped and notices a file that was replaced
+ */
+public class IngestionCheckpoint {
+    @BsonId
+    private ObjectId id;
+    private long guildId;
+    private String serverName;
+    // Name of the LogSource the checkpoint belongs to
+    private String source;
+    private String file;
+    private long offset;
+    private long lineCount;
+    private long size;
+    private long mtime;
+    // Leading bytes of the file, up to FileTail.HEAD_SIZE
+    private byte[] fingerprint;
+    private long updatedAt;
+
+    public IngestionCheckpoint() {
+        // Required for MongoDB POJO codec
+    }
+
+    public IngestionCheckpoint(long guildId, String serverName, String source, String file,
+                               FileTail.Position position, long size, long mtime) {
+        this.guildId = guildId;
+        this.serverName = serverName;
+        this.source = source;
+        this.file = file;
+        this.offset = position.offset();
+        this.lineCount = position.lineCount();
+        this.fingerprint = position.head();
+        this.size = size;
+        this.mtime = mtime;
+        this.updatedAt = System.currentTimeMillis();
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public void setId(ObjectId id) {
+        this.id = id;
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public void setGuildId(long guildId) {
+        this.guildId = guildId;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public void setServerName(String serverName) {
+        this.serverName = serverName;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(long lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getMtime() {
+        return mtime;
+    }
+
+    public void setMtime(long mtime) {
+        this.mtime = mtime;
+    }
+
+    public byte[] getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(byte[] fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * The saved read position, to restore a tail from
+     */
+    @BsonIgnore
+    public FileTail.Position getPosition() {
+        return new FileTail.Position(offset, lineCount, fingerprint == null ? new byte[0] : fingerprint);
+    }
+}
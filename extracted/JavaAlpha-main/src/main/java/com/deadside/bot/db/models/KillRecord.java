@@ -3,6 +3,11 @@ package com.deadside.bot.db.models;
 import org.bson.codecs.pojo.annotations.BsonId;
 import org.bson.types.ObjectId;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 /**
  * Database model for a kill record from the killfeed
  */
@@ -17,6 +22,8 @@ public class KillRecord {
     private long distance;
     private long timestamp;
     private String originalLine;
+    // Identifies the kill regardless of which parser read it, unique in the collection
+    private String hash;
     
     public KillRecord() {
         // Required for MongoDB POJO codec
@@ -32,6 +39,26 @@ public class KillRecord {
         this.distance = distance;
         this.timestamp = timestamp;
         this.originalLine = originalLine;
+        this.hash = hashOf(guildId, serverId, timestamp, killer, victim, weapon, distance);
+    }
+    
+    /**
+     * Compute the content hash of a kill
+     * Player names are used rather than IDs, since killfeed lines carry no IDs and the same kill must
+     * hash the same whichever file format it was read from
+     * @return 32 hex digits, the first 128 bits of a SHA-256 digest
+     */
+    public static String hashOf(long guildId, String serverId, long timestamp, String killer, String victim,
+                                String weapon, long distance) {
+        String key = guildId + "\u0000" + serverId + "\u0000" + timestamp + "\u0000" + killer + "\u0000" + victim
+                + "\u0000" + weapon + "\u0000" + distance;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
     }
     
     public ObjectId getId() {
@@ -106,6 +133,14 @@ public class KillRecord {
         this.originalLine = originalLine;
     }
     
+    public String getHash() {
+        return hash;
+    }
+    
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+    
     @Override
     public String toString() {
         return "KillRecord{" +
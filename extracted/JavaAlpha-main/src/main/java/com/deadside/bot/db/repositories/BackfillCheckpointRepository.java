@@ -0,0 +1,59 @@
+package com.deadside.bot.db.repositories;
+
+import com.deadside.bot.db.MongoDBConnection;
+import com.deadside.bot.db.models.BackfillCheckpoint;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repository for BackfillCheckpoint model
+ */
+public class BackfillCheckpointRepository {
+    private static final Logger logger = LoggerFactory.getLogger(BackfillCheckpointRepository.class);
+    private static final String COLLECTION_NAME = "backfill_checkpoints";
+
+    private final MongoCollection<BackfillCheckpoint> collection;
+
+    public BackfillCheckpointRepository() {
+        this.collection = MongoDBConnection.getInstance().getDatabase().getCollection(COLLECTION_NAME, BackfillCheckpoint.class);
+    }
+
+    /**
+     * Find the backfill checkpoint of a server
+     * @return The checkpoint, or null if the server was never backfilled
+     */
+    public BackfillCheckpoint findByGuildIdAndServerName(long guildId, String serverName) {
+        try {
+            return collection.find(filter(guildId, serverName)).first();
+        } catch (Exception e) {
+            logger.error("Error finding backfill checkpoint for guild ID: {} and server: {}", guildId, serverName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Save a checkpoint, replacing the previous one of the server
+     * @return True if the checkpoint was written
+     */
+    public boolean save(BackfillCheckpoint checkpoint) {
+        try {
+            collection.replaceOne(filter(checkpoint.getGuildId(), checkpoint.getServerName()), checkpoint,
+                    new ReplaceOptions().upsert(true));
+            return true;
+        } catch (Exception e) {
+            logger.error("Error saving backfill checkpoint for server: {}", checkpoint.getServerName(), e);
+            return false;
+        }
+    }
+
+    private static Bson filter(long guildId, String serverName) {
+        return Filters.and(
+                Filters.eq("guildId", guildId),
+                Filters.eq("serverName", serverName)
+        );
+    }
+}
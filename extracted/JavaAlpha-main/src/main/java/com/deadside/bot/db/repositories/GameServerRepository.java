@@ -6,6 +6,7 @@ import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.DeleteResult;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
@@ -117,6 +118,46 @@ public class GameServerRepository {
         }
     }
     
+    /**
+     * Save only the killfeed progress of a game server
+     * Leaves every other field as it is in the database, so settings changed while the server was
+     * being processed from an older copy are not overwritten
+     */
+    public void saveKillfeedProgress(GameServer gameServer) {
+        saveKillfeedProgress(gameServer, gameServer.getLastProcessedKillfeedFile(),
+                gameServer.getLastProcessedKillfeedLine(), gameServer.getLastProcessedTimestamp());
+    }
+    
+    /**
+     * Save given killfeed progress of a game server, such as progress taken before the server moved on
+     * @param gameServer The game server, used to find its document
+     * @param file The last processed killfeed file
+     * @param line The last processed line of that file
+     * @param timestamp The last processed timestamp
+     */
+    public void saveKillfeedProgress(GameServer gameServer, String file, long line, long timestamp) {
+        try {
+            Bson filter;
+            if (gameServer.getId() != null) {
+                filter = Filters.eq("_id", gameServer.getId());
+            } else {
+                filter = Filters.and(
+                        Filters.eq("guildId", gameServer.getGuildId()),
+                        Filters.eq("name", gameServer.getName())
+                );
+            }
+            
+            Bson update = Updates.combine(
+                    Updates.set("lastProcessedKillfeedFile", file),
+                    Updates.set("lastProcessedKillfeedLine", line),
+                    Updates.set("lastProcessedTimestamp", timestamp)
+            );
+            collection.updateOne(filter, update);
+        } catch (Exception e) {
+            logger.error("Error saving killfeed progress of game server: {}", gameServer.getName(), e);
+        }
+    }
+    
     /**
      * Delete a game server
      */
@@ -0,0 +1,82 @@
+package com.deadside.bot.db.repositories;
+
+import com.deadside.bot.db.MongoDBConnection;
+import com.deadside.bot.db.models.IngestionCheckpoint;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repository for IngestionCheckpoint model
+ * Each save replaces the server's checkpoint for a source in a single document write, so a checkpoint
+ * is never seen half written
+ */
+public class IngestionCheckpointRepository {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionCheckpointRepository.class);
+    private static final String COLLECTION_NAME = "ingestion_checkpoints";
+
+    private final MongoCollection<IngestionCheckpoint> collection;
+
+    public IngestionCheckpointRepository() {
+        this.collection = MongoDBConnection.getInstance().getDatabase().getCollection(COLLECTION_NAME, IngestionCheckpoint.class);
+        try {
+            collection.createIndex(Indexes.ascending("guildId", "serverName", "source"), new IndexOptions().unique(true));
+        } catch (Exception e) {
+            logger.warn("Could not create the ingestion checkpoint index", e);
+        }
+    }
+
+    /**
+     * Find the checkpoint of a server for one kind of log
+     * @return The checkpoint, or null if there is none
+     */
+    public IngestionCheckpoint find(long guildId, String serverName, String source) {
+        try {
+            return collection.find(filter(guildId, serverName, source)).first();
+        } catch (Exception e) {
+            logger.error("Error finding {} checkpoint for guild ID: {} and server: {}", source, guildId, serverName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Save a checkpoint, replacing the previous one of the server and source
+     */
+    public void save(IngestionCheckpoint checkpoint) {
+        try {
+            Bson filter = filter(checkpoint.getGuildId(), checkpoint.getServerName(), checkpoint.getSource());
+            collection.replaceOne(filter, checkpoint, new ReplaceOptions().upsert(true));
+        } catch (Exception e) {
+            logger.error("Error saving {} checkpoint for server: {}", checkpoint.getSource(), checkpoint.getServerName(), e);
+        }
+    }
+
+    /**
+     * Delete every checkpoint of a server
+     */
+    public void deleteByServer(long guildId, String serverName) {
+        try {
+            DeleteResult result = collection.deleteMany(Filters.and(
+                    Filters.eq("guildId", guildId),
+                    Filters.eq("serverName", serverName)
+            ));
+            logger.debug("Deleted {} ingestion checkpoint(s)", result.getDeletedCount());
+        } catch (Exception e) {
+            logger.error("Error deleting ingestion checkpoints for server: {}", serverName, e);
+        }
+    }
+
+    private static Bson filter(long guildId, String serverName, String source) {
+        return Filters.and(
+                Filters.eq("guildId", guildId),
+                Filters.eq("serverName", serverName),
+                Filters.eq("source", source)
+        );
+    }
+}
@@ -2,15 +2,22 @@ package com.deadside.bot.db.repositories;
 
 import com.deadside.bot.db.MongoDBConnection;
 import com.deadside.bot.db.models.KillRecord;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Sorts;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -24,6 +31,13 @@ public class KillRecordRepository {
     
     public KillRecordRepository() {
         this.collection = MongoDBConnection.getInstance().getDatabase().getCollection(COLLECTION_NAME, KillRecord.class);
+        try {
+            // Records stored before kills were hashed have no hash and are left out of the index
+            collection.createIndex(Indexes.ascending("hash"), new IndexOptions().unique(true)
+                    .partialFilterExpression(Filters.type("hash", "string")));
+        } catch (Exception e) {
+            logger.warn("Could not create the kill record hash index", e);
+        }
     }
     
     /**
@@ -50,6 +64,79 @@ public class KillRecordRepository {
         }
     }
     
+    /**
+     * Insert a kill record unless a record of the same kill is already stored
+     * @return False if the kill was already stored; true if it was inserted, or if the insert failed for
+     *         another reason, so a database outage does not hide new kills
+     */
+    public boolean insertIfAbsent(KillRecord killRecord) {
+        try {
+            collection.insertOne(killRecord);
+            return true;
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                return false;
+            }
+            logger.error("Error saving kill record", e);
+            return true;
+        } catch (Exception e) {
+            logger.error("Error saving kill record", e);
+            return true;
+        }
+    }
+    
+    /**
+     * Insert kill records in one unordered bulk write
+     * The server may apply the inserts in any order and keeps going past a failed document. Records of
+     * kills that are already stored are skipped.
+     * @return The indexes of the records that were inserted, leaving out those already stored, or null
+     *         if any record could not be written
+     */
+    public BitSet insertUnordered(List<KillRecord> killRecords) {
+        BitSet inserted = new BitSet(killRecords.size());
+        inserted.set(0, killRecords.size());
+        try {
+            if (!killRecords.isEmpty()) {
+                collection.insertMany(killRecords, new InsertManyOptions().ordered(false));
+            }
+            return inserted;
+        } catch (MongoBulkWriteException e) {
+            boolean onlyDuplicates = e.getWriteConcernError() == null && e.getWriteErrors().stream()
+                    .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (onlyDuplicates) {
+                logger.debug("Skipped {} kill records that were already stored", e.getWriteErrors().size());
+                e.getWriteErrors().forEach(error -> inserted.clear(error.getIndex()));
+                return inserted;
+            }
+            logger.error("Error bulk inserting {} kill records", killRecords.size(), e);
+            return null;
+        } catch (Exception e) {
+            logger.error("Error bulk inserting {} kill records", killRecords.size(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Find the time of the oldest kill record stored for a server
+     * @return Epoch milliseconds, or -1 if the server has no kill records
+     */
+    public long findOldestTimestamp(String serverId, long guildId) {
+        try {
+            Bson filter = Filters.and(
+                    Filters.eq("serverId", serverId),
+                    Filters.eq("guildId", guildId)
+            );
+            KillRecord oldest = collection.find(filter)
+                    .sort(Sorts.ascending("timestamp"))
+                    .limit(1)
+                    .first();
+            return oldest == null ? -1 : oldest.getTimestamp();
+        } catch (Exception e) {
+            logger.error("Error finding oldest kill record for server ID: {} and guild ID: {}", serverId, guildId, e);
+            return -1;
+        }
+    }
+    
     /**
      * Find recent kill records for a guild
      */
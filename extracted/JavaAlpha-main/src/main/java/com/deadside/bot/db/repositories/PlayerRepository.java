@@ -3,14 +3,18 @@ package com.deadside.bot.db.repositories;
 import com.deadside.bot.db.MongoDBConnection;
 import com.deadside.bot.db.models.Player;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -18,6 +22,9 @@ import java.util.List;
  */
 public class PlayerRepository {
     private static final Logger logger = LoggerFactory.getLogger(PlayerRepository.class);
+    
+    // Score a player earns for each kill
+    public static final int SCORE_PER_KILL = 10;
     private final MongoCollection<Player> collection;
     
     public PlayerRepository() {
@@ -175,4 +182,60 @@ public class PlayerRepository {
             logger.error("Error incrementing suicides for player ID: {}", playerId, e);
         }
     }
+    
+    /**
+     * Add kill, death and score counts to many players in one unordered bulk write
+     * Players that are not in the database yet are skipped, as for live kills; they are created when
+     * they link their account
+     * @param deltas Counts to add, one per player ID
+     * @return True if every update was applied
+     */
+    public boolean bulkAddStats(Collection<StatsDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return true;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<WriteModel<Player>> updates = new ArrayList<>(deltas.size());
+            for (StatsDelta delta : deltas) {
+                Bson update = Updates.combine(
+                        Updates.inc("kills", delta.kills),
+                        Updates.inc("deaths", delta.deaths),
+                        Updates.inc("score", delta.kills * SCORE_PER_KILL),
+                        Updates.set("lastUpdated", now)
+                );
+                updates.add(new UpdateOneModel<>(Filters.eq("playerId", delta.playerId), update));
+            }
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+            return true;
+        } catch (Exception e) {
+            logger.error("Error bulk updating stats of {} players", deltas.size(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Counts to add to a player's stats
+     */
+    public static class StatsDelta {
+        private final String playerId;
+        private int kills;
+        private int deaths;
+        
+        public StatsDelta(String playerId) {
+            this.playerId = playerId;
+        }
+        
+        public void addKill() {
+            kills++;
+        }
+        
+        public void addDeath() {
+            deaths++;
+        }
+        
+        public String getPlayerId() {
+            return playerId;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.deadside.bot.events;
+
+import com.deadside.bot.parsers.DeathlogDecoder;
+import com.deadside.bot.parsers.KillfeedDecoder;
+import com.deadside.bot.parsers.LogEventClassifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Line decoders for each kind of log file
+ * The built-in decoders are registered up front; more can be added for new line types,
+ * and are tried after the earlier ones
+ */
+public class DecoderRegistry {
+    private static DecoderRegistry instance;
+
+    private final Map<LogSource, List<LineDecoder>> decoders = new ConcurrentHashMap<>();
+
+    private DecoderRegistry() {
+        register(LogSource.SERVER_LOG, new LogEventClassifier());
+        register(LogSource.DEATHLOG, new DeathlogDecoder());
+        register(LogSource.KILLFEED, new KillfeedDecoder());
+    }
+
+    public static synchronized DecoderRegistry getInstance() {
+        if (instance == null) {
+            instance = new DecoderRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Add a decoder for a kind of file
+     */
+    public void register(LogSource source, LineDecoder decoder) {
+        decoders.computeIfAbsent(source, k -> new CopyOnWriteArrayList<>()).add(decoder);
+    }
+
+    /**
+     * Decode a line with the first decoder of its source that recognizes it
+     * @param source The kind of file the line comes from
+     * @param line The line, without its line terminator
+     * @return The event, or null if no decoder recognizes the line
+     */
+    public GameEvent decode(LogSource source, String line) {
+        List<LineDecoder> candidates = decoders.get(source);
+        if (candidates == null) {
+            return null;
+        }
+        for (LineDecoder decoder : candidates) {
+            GameEvent event = decoder.decode(line);
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decode a line with the first decoder of its source that recognizes it, with canonical player and
+     * weapon strings
+     * @param source The kind of file the line comes from
+     * @param line The line, without its line terminator
+     * @param interner The interner of the server the line comes from
+     * @return The event, or null if no decoder recognizes the line
+     */
+    public GameEvent decode(LogSource source, String line, ServerInterner interner) {
+        List<LineDecoder> candidates = decoders.get(source);
+        if (candidates == null) {
+            return null;
+        }
+        for (LineDecoder decoder : candidates) {
+            GameEvent event = decoder.decode(line, interner);
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,290 @@
+package com.deadside.bot.events;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.GameServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans decoded events out to every sink subscribed to their type
+ * A line is decoded once and each consumer (Discord notifications, stats, storage) receives the same
+ * event object. Publishing only queues the event in the ring of its server and source, so a slow Discord
+ * or database call never stalls parsing until a ring is full. A ring with events is drained by one task at
+ * a time on a small pool, which hands each event to the subscribed sinks in turn, so the sinks of a server
+ * and source see its events in the order they were published, across event types, while a slow server
+ * only holds up its own rings. A failing sink is logged and does not keep the event from the others.
+ */
+public class EventDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(EventDispatcher.class);
+    private static EventDispatcher instance;
+
+    // Events a drain task handles before making way for the other rings
+    private static final int MAX_BATCH = 64;
+    // How long shutdown waits for the sinks to catch up
+    private static final long DRAIN_TIMEOUT_MS = 10000;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Map<String, RingConsumer> rings = new ConcurrentHashMap<>();
+    private final ExecutorService consumers;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+    private volatile boolean running = true;
+
+    private EventDispatcher() {
+        Config config = Config.getInstance();
+        this.capacity = config.getEventBusCapacity();
+        this.waitStrategy = WaitStrategy.forName(config.getEventBusWaitStrategy());
+        AtomicInteger threads = new AtomicInteger();
+        this.consumers = Executors.newFixedThreadPool(config.getEventBusConsumerThreads(), r -> {
+            Thread thread = new Thread(r, "event-consumer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized EventDispatcher getInstance() {
+        if (instance == null) {
+            instance = new EventDispatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Receive events of a type from every source
+     * @param type The event type, or GameEvent.class for all events
+     * @param sink The consumer
+     */
+    public <E extends GameEvent> void subscribe(Class<E> type, EventSink<? super E> sink) {
+        subscribe(null, type, sink);
+    }
+
+    /**
+     * Receive events of a type decoded from one kind of file
+     * The sink is called on a consumer thread, after the sinks subscribed before it and in the order the
+     * events were published for each server; different servers are handled in parallel
+     * @param source The source, or null for every source
+     * @param type The event type, or GameEvent.class for all events
+     * @param sink The consumer
+     */
+    public <E extends GameEvent> void subscribe(LogSource source, Class<E> type, EventSink<? super E> sink) {
+        subscriptions.add(new Subscription(source, type, sink));
+    }
+
+    /**
+     * Queue an event for its subscribers
+     * Waits while the sinks are a full ring behind on this server and source
+     * @param server The server the event happened on
+     * @param source The kind of file the event was decoded from
+     * @param event The event
+     * @return False if the event was dropped because the dispatcher is shut down or the thread was interrupted
+     */
+    public boolean publish(GameServer server, LogSource source, GameEvent event) {
+        if (!running) {
+            return false;
+        }
+        RingConsumer consumer = rings.computeIfAbsent(ringKey(server, source),
+                k -> new RingConsumer(new EventRing(source, capacity, waitStrategy)));
+        boolean published = consumer.ring.publish(server, event);
+        if (!published) {
+            logger.warn("Dropped {} event for server {} while waiting for the sinks",
+                    event.getClass().getSimpleName(), server.getName());
+        }
+        schedule(consumer);
+        return published;
+    }
+
+    /**
+     * Run an action once the events published so far for a server and source have been handed to the sinks
+     * Parsers save their read position this way, so a position is never stored ahead of events that a
+     * crash or the shutdown drain limit could still lose. The action runs on a consumer thread, or right
+     * away when nothing is queued, and never runs once the dispatcher is shut down.
+     * @param server The server the events happened on
+     * @param source The kind of file the events were decoded from
+     * @param action The action
+     */
+    public void afterDelivered(GameServer server, LogSource source, Runnable action) {
+        if (!running) {
+            return;
+        }
+        RingConsumer consumer = rings.get(ringKey(server, source));
+        if (consumer == null) {
+            runAction(action);
+            return;
+        }
+        consumer.actions.add(new PendingAction(consumer.ring.published(), action));
+        schedule(consumer);
+    }
+
+    /**
+     * Get the number of queued events of each ring
+     * @return Events not yet handled by the sinks, keyed by guild, server and source
+     */
+    public Map<String, Long> getQueueDepths() {
+        Map<String, Long> depths = new TreeMap<>();
+        rings.forEach((key, consumer) -> depths.put(key, consumer.ring.depth()));
+        return depths;
+    }
+
+    /**
+     * Summarize the queues for logs and status replies
+     */
+    public String describeQueues() {
+        long depth = 0;
+        long maxDepth = 0;
+        long published = 0;
+        long waits = 0;
+        for (RingConsumer consumer : rings.values()) {
+            long ringDepth = consumer.ring.depth();
+            depth += ringDepth;
+            maxDepth = Math.max(maxDepth, ringDepth);
+            published += consumer.ring.published();
+            waits += consumer.ring.producerWaits();
+        }
+        return String.format("%d queued in %d rings (deepest %d of %d), %d published, %d producer waits",
+                depth, rings.size(), maxDepth, capacity, published, waits);
+    }
+
+    /**
+     * Stop accepting events, give the sinks time to handle the queued ones and stop the consumer threads
+     */
+    public void shutdown() {
+        running = false;
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline && rings.values().stream().anyMatch(consumer -> consumer.ring.depth() > 0)) {
+            waitStrategy.idle(Integer.MAX_VALUE);
+        }
+        consumers.shutdownNow();
+        logger.info("Event queues at shutdown: {}", describeQueues());
+    }
+
+    /**
+     * Start a drain task for a ring unless one is already queued or running
+     */
+    private void schedule(RingConsumer consumer) {
+        if (consumer.scheduled.compareAndSet(false, true)) {
+            try {
+                consumers.execute(() -> drain(consumer));
+            } catch (RejectedExecutionException e) {
+                // Shut down, the remaining events are not delivered
+                consumer.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Drain task of a ring: hand a batch of its events to the sinks, then queue another task if more are waiting
+     */
+    private void drain(RingConsumer consumer) {
+        int handled = consumer.ring.drain(this::deliver, MAX_BATCH);
+        
+        // Actions whose events have all been handed to the sinks
+        PendingAction action;
+        while ((action = consumer.actions.peek()) != null && action.after() <= consumer.ring.handled()) {
+            consumer.actions.poll();
+            runAction(action.action());
+        }
+        
+        if (handled == MAX_BATCH) {
+            // Go to the back of the pool's queue, so the other rings get their turn
+            try {
+                consumers.execute(() -> drain(consumer));
+            } catch (RejectedExecutionException e) {
+                consumer.scheduled.set(false);
+            }
+            return;
+        }
+        consumer.scheduled.set(false);
+        // An event or action added after the drain but before the flag was cleared found the task still scheduled
+        if (consumer.ring.depth() > 0 || !consumer.actions.isEmpty()) {
+            schedule(consumer);
+        }
+    }
+
+    private static void runAction(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            logger.error("Error running an action after event delivery: {}", e.getMessage(), e);
+        }
+    }
+
+    private static String ringKey(GameServer server, LogSource source) {
+        return server.getGuildId() + ":" + server.getName() + ":" + source;
+    }
+
+    /**
+     * Hand an event to every sink of its source, in the order they subscribed
+     */
+    private void deliver(GameServer server, LogSource source, GameEvent event) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.follows(source)) {
+                subscription.deliver(server, event);
+            }
+        }
+    }
+
+    /**
+     * A ring, whether a drain task for it is queued or running, and the actions waiting for its events
+     */
+    private static final class RingConsumer {
+        private final EventRing ring;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Queue<PendingAction> actions = new ConcurrentLinkedQueue<>();
+
+        RingConsumer(EventRing ring) {
+            this.ring = ring;
+        }
+    }
+
+    /**
+     * An action to run once some of a ring's events have been handed to the sinks
+     * @param after Number of events that must have been handled first
+     */
+    private record PendingAction(long after, Runnable action) {
+    }
+
+    /**
+     * A sink and the source and type it receives
+     */
+    private static final class Subscription {
+        private final LogSource source;
+        private final Class<? extends GameEvent> type;
+        private final EventSink<?> sink;
+
+        Subscription(LogSource source, Class<? extends GameEvent> type, EventSink<?> sink) {
+            this.source = source;
+            this.type = type;
+            this.sink = sink;
+        }
+
+        boolean follows(LogSource ringSource) {
+            return source == null || source == ringSource;
+        }
+
+        @SuppressWarnings("unchecked")
+        void deliver(GameServer server, GameEvent event) {
+            if (type != GameEvent.class && type != event.getClass()) {
+                return;
+            }
+            try {
+                ((EventSink<GameEvent>) sink).accept(server, event);
+            } catch (Exception e) {
+                logger.error("Error handling {} event for server {}: {}",
+                        event.getClass().getSimpleName(), server.getName(), e.getMessage(), e);
+            }
+        }
+    }
+}
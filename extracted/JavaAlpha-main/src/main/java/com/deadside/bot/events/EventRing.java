@@ -0,0 +1,148 @@
+package com.deadside.bot.events;
+
+import com.deadside.bot.db.models.GameServer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded ring of events between one producer and one consumer
+ * The slots are allocated once and reused. The producer claims the next sequence, fills its slot and
+ * moves the cursor; the consumer follows with its own sequence. A producer that would overwrite a slot the
+ * consumer has not handled yet waits, so a slow consumer holds parsing back by at most the ring's capacity
+ * instead of letting the backlog grow without limit.
+ */
+public class EventRing {
+    private final LogSource source;
+    private final Slot[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // Sequence of the last published event
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // Sequence of the last event handled by the consumer
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    private final AtomicLong producerWaits = new AtomicLong();
+
+    /**
+     * @param source The kind of file the ring's events are decoded from
+     * @param capacity Number of slots, rounded up to a power of two
+     * @param waitStrategy How the producer and consumer wait
+     */
+    public EventRing(LogSource source, int capacity, WaitStrategy waitStrategy) {
+        this.source = source;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Add an event, waiting while the ring is full
+     * Each server's parser is the only producer of its ring; the lock only guards against an overlapping run
+     * @return False if the thread was interrupted while waiting and the event was dropped
+     */
+    public synchronized boolean publish(GameServer server, GameEvent event) {
+        long sequence = cursor.get() + 1;
+        long wrapPoint = sequence - slots.length;
+        int attempt = 0;
+        while (wrapPoint > consumed.get()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (attempt == 0) {
+                producerWaits.incrementAndGet();
+            }
+            waitStrategy.idle(attempt++);
+        }
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.server = server;
+        slot.event = event;
+        cursor.set(sequence);
+        waitStrategy.signal();
+        return true;
+    }
+
+    /**
+     * Hand the events the consumer has not seen yet to it, in order
+     * Must not be called by two threads at once
+     * @param handler Receives the events
+     * @param maxBatch Most events handled in one call, so one ring cannot starve the others
+     * @return Number of events handled
+     */
+    public int drain(SlotHandler handler, int maxBatch) {
+        long next = consumed.get() + 1;
+        long available = Math.min(cursor.get(), next + maxBatch - 1);
+        if (available < next) {
+            return 0;
+        }
+        for (long s = next; s <= available; s++) {
+            Slot slot = slots[(int) s & mask];
+            GameServer server = slot.server;
+            GameEvent event = slot.event;
+            // Clear the slot so the event can be collected once the sinks are done with it
+            slot.server = null;
+            slot.event = null;
+            handler.handle(server, source, event);
+        }
+        consumed.set(available);
+        waitStrategy.signal();
+        return (int) (available - next + 1);
+    }
+
+    public LogSource source() {
+        return source;
+    }
+
+    /**
+     * @return Number of events published and not yet handled by the consumer
+     */
+    public long depth() {
+        return Math.max(0, cursor.get() - consumed.get());
+    }
+
+    /**
+     * @return Number of events handed to the consumer so far
+     */
+    public long handled() {
+        return consumed.get() + 1;
+    }
+
+    /**
+     * @return Number of events published so far
+     */
+    public long published() {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * @return Number of times the producer found the ring full and had to wait
+     */
+    public long producerWaits() {
+        return producerWaits.get();
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Receives the events of a ring
+     */
+    @FunctionalInterface
+    public interface SlotHandler {
+        void handle(GameServer server, LogSource source, GameEvent event);
+    }
+
+    /**
+     * A reusable slot, written by the producer before it moves the cursor
+     */
+    private static final class Slot {
+        private GameServer server;
+        private GameEvent event;
+    }
+}
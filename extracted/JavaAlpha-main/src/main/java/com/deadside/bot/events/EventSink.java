@@ -0,0 +1,17 @@
+package com.deadside.bot.events;
+
+import com.deadside.bot.db.models.GameServer;
+
+/**
+ * Consumer of decoded events, subscribed through the {@link EventDispatcher}
+ */
+@FunctionalInterface
+public interface EventSink<E extends GameEvent> {
+
+    /**
+     * Handle an event
+     * @param server The server the event happened on
+     * @param event The event
+     */
+    void accept(GameServer server, E event) throws Exception;
+}
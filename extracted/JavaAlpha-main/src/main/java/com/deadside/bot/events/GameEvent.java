@@ -0,0 +1,88 @@
+package com.deadside.bot.events;
+
+/**
+ * An event decoded from a game server's logs
+ * Every source format decodes into these types, so consumers never see raw lines
+ */
+public sealed interface GameEvent {
+
+    /**
+     * @return When the event happened in epoch milliseconds, or -1 if the line had no timestamp
+     */
+    long time();
+
+    /**
+     * A player connected
+     */
+    record PlayerJoin(long time, String player) implements GameEvent {
+    }
+
+    /**
+     * A player disconnected
+     */
+    record PlayerLeave(long time, String player) implements GameEvent {
+    }
+
+    /**
+     * A player killed another player
+     * Player IDs are only known for death log entries and are null otherwise
+     */
+    record Kill(long time, String killer, String killerId, String victim, String victimId,
+                String weapon, long distance) implements GameEvent {
+    }
+
+    /**
+     * A player died without being killed by another player, such as a suicide or fall
+     */
+    record Death(long time, String player, String playerId, String cause) implements GameEvent {
+    }
+
+    /**
+     * An airdrop changed state
+     */
+    record Airdrop(long time, String status) implements GameEvent {
+    }
+
+    /**
+     * A helicopter crash site spawned
+     */
+    record HelicopterCrash(long time, String position) implements GameEvent {
+    }
+
+    /**
+     * A trader event started
+     */
+    record Trader(long time, String position) implements GameEvent {
+    }
+
+    /**
+     * A mission changed state
+     */
+    record Mission(long time, String mission, String status) implements GameEvent {
+    }
+
+    /**
+     * A mission was scheduled to respawn
+     */
+    record MissionRespawn(long time, String mission, int seconds) implements GameEvent {
+    }
+
+    /**
+     * A mission failed
+     */
+    record MissionFail(long time, String details) implements GameEvent {
+    }
+
+    /**
+     * A vehicle spawned, or was added to or removed from the world
+     * @param details Spawn point for spawns, the new vehicle total for additions and removals
+     */
+    record Vehicle(long time, VehicleAction action, String vehicle, String details) implements GameEvent {
+    }
+
+    enum VehicleAction {
+        SPAWNED,
+        ADDED,
+        REMOVED
+    }
+}
@@ -0,0 +1,28 @@
+package com.deadside.bot.events;
+
+/**
+ * Turns a single log line into an event
+ * Decoders are shared between parser threads and must be thread-safe
+ */
+@FunctionalInterface
+public interface LineDecoder {
+
+    /**
+     * Decode a line
+     * @param line The line, without its line terminator
+     * @return The event, or null if this decoder does not recognize the line
+     */
+    GameEvent decode(String line);
+
+    /**
+     * Decode a line, taking player and weapon strings from a server's pools
+     * Decoders that can look fields up without creating them override this to skip the copies
+     * @param line The line, without its line terminator
+     * @param interner The interner of the server the line comes from
+     * @return The event, or null if this decoder does not recognize the line
+     */
+    default GameEvent decode(String line, ServerInterner interner) {
+        GameEvent event = decode(line);
+        return event == null ? null : interner.intern(event);
+    }
+}
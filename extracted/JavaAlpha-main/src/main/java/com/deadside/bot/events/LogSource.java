@@ -0,0 +1,21 @@
+package com.deadside.bot.events;
+
+/**
+ * The kinds of files events are decoded from
+ */
+public enum LogSource {
+    /**
+     * Deadside.log
+     */
+    SERVER_LOG,
+
+    /**
+     * Semicolon-separated death log CSVs
+     */
+    DEATHLOG,
+
+    /**
+     * Quoted killfeed CSVs
+     */
+    KILLFEED
+}
@@ -0,0 +1,114 @@
+package com.deadside.bot.events;
+
+import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.utils.InternPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical player and weapon strings of one game server
+ * A server has a few hundred players and about a hundred weapons, so decoding through its interner
+ * leaves one instance of each name on the heap however many events refer to it, and gives each a small
+ * id that stats can be keyed by. Player IDs share the player pool with player names. A pool that fills up,
+ * as the player pool of a long-running server with many short-lived players does, is replaced by an empty
+ * one, so only names still in use come back; callers keying by id keep the pool they took the ids from.
+ */
+public class ServerInterner {
+    private static final Logger logger = LoggerFactory.getLogger(ServerInterner.class);
+    private static final int PLAYER_CAPACITY = 8192;
+    private static final int WEAPON_CAPACITY = 1024;
+
+    private static final Map<String, ServerInterner> servers = new ConcurrentHashMap<>();
+
+    private final String serverName;
+    private volatile InternPool players = new InternPool(PLAYER_CAPACITY);
+    private volatile InternPool weapons = new InternPool(WEAPON_CAPACITY);
+
+    private ServerInterner(String serverName) {
+        this.serverName = serverName;
+    }
+
+    /**
+     * Get the interner of a server, creating it on first use
+     */
+    public static ServerInterner of(GameServer server) {
+        return servers.computeIfAbsent(server.getGuildId() + ":" + server.getName(), k -> new ServerInterner(server.getName()));
+    }
+
+    /**
+     * Drop the interner of a server that was removed
+     */
+    public static void remove(GameServer server) {
+        servers.remove(server.getGuildId() + ":" + server.getName());
+    }
+
+    /**
+     * Get the player pool, starting a new one if it is full
+     */
+    public InternPool players() {
+        InternPool pool = players;
+        if (pool.isFull()) {
+            pool = renewPlayers(pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Get the weapon pool, starting a new one if it is full
+     */
+    public InternPool weapons() {
+        InternPool pool = weapons;
+        if (pool.isFull()) {
+            pool = renewWeapons(pool);
+        }
+        return pool;
+    }
+
+    private synchronized InternPool renewPlayers(InternPool full) {
+        if (players == full) {
+            logger.info("Player name pool of server {} holds {} names, starting a new one", serverName, full.size());
+            players = new InternPool(PLAYER_CAPACITY);
+        }
+        return players;
+    }
+
+    private synchronized InternPool renewWeapons(InternPool full) {
+        if (weapons == full) {
+            logger.info("Weapon name pool of server {} holds {} names, starting a new one", serverName, full.size());
+            weapons = new InternPool(WEAPON_CAPACITY);
+        }
+        return weapons;
+    }
+
+    /**
+     * Replace the player and weapon strings of an event with their canonical instances
+     * @return An event holding only canonical strings; events without players are returned unchanged
+     */
+    public GameEvent intern(GameEvent event) {
+        InternPool playerPool = players();
+        InternPool weaponPool = weapons();
+        if (event instanceof GameEvent.PlayerJoin) {
+            GameEvent.PlayerJoin join = (GameEvent.PlayerJoin) event;
+            return new GameEvent.PlayerJoin(join.time(), playerPool.intern(join.player()));
+        }
+        if (event instanceof GameEvent.PlayerLeave) {
+            GameEvent.PlayerLeave leave = (GameEvent.PlayerLeave) event;
+            return new GameEvent.PlayerLeave(leave.time(), playerPool.intern(leave.player()));
+        }
+        if (event instanceof GameEvent.Kill) {
+            GameEvent.Kill kill = (GameEvent.Kill) event;
+            return new GameEvent.Kill(kill.time(), playerPool.intern(kill.killer()), playerPool.intern(kill.killerId()),
+                    playerPool.intern(kill.victim()), playerPool.intern(kill.victimId()), weaponPool.intern(kill.weapon()),
+                    kill.distance());
+        }
+        if (event instanceof GameEvent.Death) {
+            GameEvent.Death death = (GameEvent.Death) event;
+            return new GameEvent.Death(death.time(), playerPool.intern(death.player()), playerPool.intern(death.playerId()),
+                    weaponPool.intern(death.cause()));
+        }
+        return event;
+    }
+}
@@ -0,0 +1,133 @@
+package com.deadside.bot.events;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * How a parser waits for room in a full event ring, and shutdown for the rings to drain
+ * Spinning strategies answer fastest and cost a core for each waiting thread; blocking sleeps while it
+ * waits, waking every 10 ms to check again, and adds a wake-up to each hand-off.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Wait a little before checking the ring again
+     * @param attempt Number of checks that found nothing to do so far, starting at 0
+     */
+    void idle(int attempt);
+
+    /**
+     * Wake threads waiting in {@link #idle}, called after a ring's cursor or its consumer's position moved
+     */
+    void signal();
+
+    /**
+     * Get a strategy by name: blocking, sleeping, yielding or busy-spin
+     * @return The strategy, or a blocking one for an unknown name
+     */
+    static WaitStrategy forName(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "busy-spin":
+                return new BusySpin();
+            case "yielding":
+                return new Yielding();
+            case "sleeping":
+                return new Sleeping();
+            default:
+                return new Blocking();
+        }
+    }
+
+    /**
+     * Spins on the CPU, for the lowest hand-off latency
+     */
+    final class BusySpin implements WaitStrategy {
+        @Override
+        public void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    /**
+     * Spins briefly, then yields the CPU to other threads
+     */
+    final class Yielding implements WaitStrategy {
+        @Override
+        public void idle(int attempt) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    /**
+     * Spins, yields, then sleeps for short intervals
+     */
+    final class Sleeping implements WaitStrategy {
+        @Override
+        public void idle(int attempt) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else if (attempt < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    /**
+     * Sleeps on a condition until signalled, for at most 10 ms at a time
+     * Waits are bounded, so a missed signal only delays a thread; an idle thread still wakes 100 times a second
+     */
+    final class Blocking implements WaitStrategy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition moved = lock.newCondition();
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        @Override
+        public void idle(int attempt) {
+            waiting.incrementAndGet();
+            lock.lock();
+            try {
+                moved.await(10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+                waiting.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void signal() {
+            // Only take the lock when a thread is asleep
+            if (waiting.get() > 0) {
+                lock.lock();
+                try {
+                    moved.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
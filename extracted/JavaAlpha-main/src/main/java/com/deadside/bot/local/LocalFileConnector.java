@@ -0,0 +1,315 @@
+package com.deadside.bot.local;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.sftp.FileTail;
+import com.deadside.bot.sftp.LineReader;
+import com.deadside.bot.sftp.SftpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Reads the logs of game servers running on the same machine as the bot
+ * Paths are the same as on SFTP and are resolved against the server's local path,
+ * so the parsers work unchanged for both source types
+ */
+public class LocalFileConnector {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileConnector.class);
+
+    // Read positions of files being tailed, keyed by guild, server and absolute path
+    private final Map<String, FileTail> tails = new ConcurrentHashMap<>();
+
+    /**
+     * Check that the server's local directory exists and can be read
+     * @param server The server config
+     * @return True if the directory is usable
+     */
+    public boolean testConnection(GameServer server) {
+        try {
+            Path root = getRoot(server);
+            return Files.isDirectory(root) && Files.isReadable(root);
+        } catch (Exception e) {
+            logger.error("Invalid local path for server {}: {}", server.getName(), server.getLocalPath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Resolve a server path against the server's local directory
+     * @param server The server config
+     * @param path Path as it would be used over SFTP
+     * @return The local path
+     * @throws IOException If the path points outside the server's local directory
+     */
+    public Path resolve(GameServer server, String path) throws IOException {
+        Path root = getRoot(server);
+        Path resolved = root.resolve(path).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new IOException("Path " + path + " is outside the local directory of server " + server.getName());
+        }
+        return resolved;
+    }
+
+    /**
+     * List all CSV files in the deathlogs directory and subdirectories with their attributes
+     * @param server The server config
+     * @return CSV file paths relative to the deathlogs directory, sorted by name, with their attributes
+     */
+    public Map<String, BasicFileAttributes> findDeathlogFileAttributes(GameServer server) throws IOException {
+        Path baseDir = resolve(server, server.getDeathlogsDirectory());
+        if (!Files.isDirectory(baseDir)) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, BasicFileAttributes> csvFiles = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(baseDir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!path.getFileName().toString().toLowerCase().endsWith(".csv")) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attrs.isRegularFile()) {
+                    // Same naming as the SFTP listing, forward slashes relative to the deathlogs directory
+                    csvFiles.put(baseDir.relativize(path).toString().replace('\\', '/'), attrs);
+                }
+            }
+        }
+        return csvFiles;
+    }
+
+    /**
+     * Stream a file line by line
+     * @param server The server config
+     * @param filePath Path to the file
+     * @param handler Receives each line with its zero-based line number
+     * @return The number of lines in the file
+     */
+    public long forEachLine(GameServer server, String filePath, SftpConnector.LineHandler handler) throws Exception {
+        long lineNumber = 0;
+        try (FileChannel channel = FileChannel.open(resolve(server, filePath), StandardOpenOption.READ);
+             LineReader reader = new LineReader(Channels.newInputStream(channel))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                handler.handle(lineNumber++, line);
+            }
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Stream a deathlog file line by line
+     * @param filename Path of the CSV file relative to the deathlogs directory
+     */
+    public long forEachDeathlogLine(GameServer server, String filename, SftpConnector.LineHandler handler) throws Exception {
+        return forEachLine(server, server.getDeathlogsDirectory() + "/" + filename, handler);
+    }
+
+    /**
+     * Read the complete lines appended to a file since the previous call
+     * The first call returns every line in the file. A file that was replaced, recognized by its file key
+     * (the inode on Unix) or by its first bytes, is drained from its new name before the new file is read.
+     * A file truncated in place is read again from the start.
+     * @param server The server config
+     * @param filePath Path to the file
+     * @return The new lines, without line terminators
+     */
+    public List<String> readNewLines(GameServer server, String filePath) throws IOException {
+        Path path = resolve(server, filePath);
+        FileTail tail = tails.computeIfAbsent(tailKey(server, path), k -> new FileTail());
+
+        synchronized (tail) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                Object identity = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                long size = channel.size();
+                if (size == tail.getOffset() && Objects.equals(identity, tail.getIdentity())) {
+                    return Collections.emptyList();
+                }
+
+                List<String> lines = new ArrayList<>();
+                if (tail.getOffset() > 0 && size < tail.getOffset() && identity != null && identity.equals(tail.getIdentity())) {
+                    // Truncated in place: same file, so there is no rotated copy to drain
+                    logger.info("Local file {} for server {} was truncated, reading it from the start", path, server.getName());
+                    tail.rotate();
+                } else if (tail.getOffset() > 0 && isRotated(tail, identity, channel, size)) {
+                    Path rotated = findRotatedFile(path, tail);
+                    if (rotated != null) {
+                        logger.info("Local file {} for server {} was rotated to {}, reading the rest of it before switching",
+                                path, server.getName(), rotated.getFileName());
+                        try (FileChannel rotatedChannel = FileChannel.open(rotated, StandardOpenOption.READ)) {
+                            rotatedChannel.position(tail.getOffset());
+                            lines.addAll(tail.consume(Channels.newInputStream(rotatedChannel), 0));
+                        }
+                        String last = tail.drainPartial();
+                        if (last != null) {
+                            lines.add(last);
+                        }
+                    } else {
+                        logger.info("Local file {} for server {} was replaced, reading it from the start", path, server.getName());
+                    }
+                    tail.rotate();
+                }
+
+                channel.position(tail.getOffset());
+                lines.addAll(tail.consume(Channels.newInputStream(channel), 0));
+                tail.setIdentity(identity);
+                return lines;
+            }
+        }
+    }
+
+    /**
+     * Get the read position of a tailed file, for saving across restarts
+     * @param server The server config
+     * @param filePath Path to the file
+     * @return The position, or null if the file has not been read
+     */
+    public FileTail.Position getTailPosition(GameServer server, String filePath) throws IOException {
+        FileTail tail = tails.get(tailKey(server, resolve(server, filePath)));
+        return tail == null ? null : tail.getPosition();
+    }
+
+    /**
+     * Continue tailing a file from a known position, such as a saved checkpoint
+     * @param server The server config
+     * @param filePath Path to the file
+     * @param position Position to read on from
+     */
+    public void restoreTail(GameServer server, String filePath, FileTail.Position position) throws IOException {
+        tails.computeIfAbsent(tailKey(server, resolve(server, filePath)), k -> new FileTail()).restore(position);
+    }
+
+    /**
+     * Continue tailing a file from its current end without reading it, for a file already processed
+     * before a restart
+     * @param server The server config
+     * @param filePath Path to the file
+     */
+    public void skipToEnd(GameServer server, String filePath) throws IOException {
+        Path path = resolve(server, filePath);
+        FileTail tail = tails.computeIfAbsent(tailKey(server, path), k -> new FileTail());
+
+        synchronized (tail) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                Object identity = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                long size = channel.size();
+                ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, FileTail.HEAD_SIZE));
+                while (head.hasRemaining()) {
+                    if (channel.read(head) < 0) {
+                        break;
+                    }
+                }
+                tail.restore(new FileTail.Position(size, 0, Arrays.copyOf(head.array(), head.position())));
+                tail.setIdentity(identity);
+            }
+        }
+    }
+
+    /**
+     * Key of a tailed file as read by one server of one guild, so two guilds reading the same file keep separate positions
+     */
+    private static String tailKey(GameServer server, Path path) {
+        return server.getGuildId() + ":" + server.getName() + "@" + path;
+    }
+
+    /**
+     * Check whether the file at a tailed path is no longer the file the tail was reading
+     * A file truncated in place keeps its file key, so callers check for that first
+     */
+    private static boolean isRotated(FileTail tail, Object identity, FileChannel channel, long size) throws IOException {
+        if (identity != null && tail.getIdentity() != null) {
+            return !identity.equals(tail.getIdentity());
+        }
+        // Without file keys, fall back to the size and the first bytes
+        return size < tail.getOffset() || !headMatches(channel, tail);
+    }
+
+    /**
+     * Find the file a tailed file was renamed to within the same directory
+     * A rename keeps the file key, so that is matched where the platform has one; otherwise the most
+     * recently modified file with the same first bytes that is at least as long as the part already read
+     * @return The rotated file, or null if none matches
+     */
+    private static Path findRotatedFile(Path path, FileTail tail) throws IOException {
+        Path best = null;
+        FileTime bestTime = null;
+        try (Stream<Path> siblings = Files.list(path.getParent())) {
+            for (Path sibling : (Iterable<Path>) siblings::iterator) {
+                if (sibling.equals(path)) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(sibling, BasicFileAttributes.class);
+                if (!attrs.isRegularFile() || attrs.size() < tail.getOffset()) {
+                    continue;
+                }
+                if (tail.getIdentity() != null) {
+                    if (tail.getIdentity().equals(attrs.fileKey())) {
+                        return sibling;
+                    }
+                    continue;
+                }
+                if (bestTime != null && attrs.lastModifiedTime().compareTo(bestTime) <= 0) {
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(sibling, StandardOpenOption.READ)) {
+                    if (headMatches(channel, tail)) {
+                        best = sibling;
+                        bestTime = attrs.lastModifiedTime();
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean headMatches(FileChannel channel, FileTail tail) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(tail.getHeadLength());
+        while (head.hasRemaining()) {
+            if (channel.read(head, head.position()) < 0) {
+                break;
+            }
+        }
+        return tail.matchesHead(head.array(), head.position());
+    }
+
+    /**
+     * Get the server's local directory
+     * @throws IOException If the server has no local path or it is outside the configured local root directory
+     */
+    private static Path getRoot(GameServer server) throws IOException {
+        if (server.getLocalPath() == null || server.getLocalPath().isEmpty()) {
+            throw new IOException("No local path configured for server " + server.getName());
+        }
+        Path root = Paths.get(server.getLocalPath()).toAbsolutePath().normalize();
+        String allowed = Config.getInstance().getLocalRootDirectory();
+        if (!allowed.isEmpty()) {
+            // Compare real paths, so a symbolic link inside the root cannot lead out of it
+            Path allowedRoot = Paths.get(allowed).toAbsolutePath().normalize();
+            Path real = Files.exists(root) ? root.toRealPath() : root;
+            Path realAllowed = Files.exists(allowedRoot) ? allowedRoot.toRealPath() : allowedRoot;
+            if (!real.startsWith(realAllowed)) {
+                throw new IOException("Local path of server " + server.getName() + " is outside " + allowed);
+            }
+        }
+        return root;
+    }
+}
@@ -0,0 +1,294 @@
+package com.deadside.bot.local;
+
+import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.parsers.DeadsideLogParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Watches the log directories of local game servers and parses them as soon as they change
+ * File system events are coalesced per server and file kind, and every parse runs on a single
+ * dispatch thread so a server is never parsed by two threads at once
+ */
+public class LocalLogWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(LocalLogWatcher.class);
+
+    private final LocalFileConnector connector = new LocalFileConnector();
+    private final Consumer<GameServer> onLogChanged;
+    private final Consumer<GameServer> onDeathlogChanged;
+    private final long debounce;
+
+    private final WatchService watchService;
+    private final ScheduledExecutorService dispatcher;
+    private final Thread watchThread;
+
+    // Latest config of each watched server, keyed by guild and server name
+    private final Map<String, GameServer> servers = new ConcurrentHashMap<>();
+    // What each registered directory is watched for
+    private final Map<WatchKey, List<Target>> targets = new ConcurrentHashMap<>();
+    // Parses that are queued but have not started yet
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param onLogChanged Parses a server's Deadside.log
+     * @param onDeathlogChanged Parses a server's deathlog CSVs
+     * @param debounce How long to wait after a change so a burst of writes is parsed once, in milliseconds
+     */
+    public LocalLogWatcher(Consumer<GameServer> onLogChanged, Consumer<GameServer> onDeathlogChanged,
+                           long debounce) throws IOException {
+        this.onLogChanged = onLogChanged;
+        this.onDeathlogChanged = onDeathlogChanged;
+        this.debounce = debounce;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "local-log-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchThread = new Thread(this::watchLoop, "local-log-watcher");
+        this.watchThread.setDaemon(true);
+    }
+
+    /**
+     * Start watching for file system events
+     */
+    public void start() {
+        logger.info("Starting local log watcher");
+        watchThread.start();
+    }
+
+    /**
+     * Stop watching and discard queued parses
+     */
+    public void stop() {
+        logger.info("Stopping local log watcher");
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Error closing watch service: {}", e.getMessage());
+        }
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Bring the watched set in line with the configured servers
+     * New local servers are registered, removed ones are dropped, and every local server is parsed
+     * once so nothing is missed if the platform dropped an event
+     * @param allServers Every configured server, local or not
+     */
+    public void sync(List<GameServer> allServers) {
+        Set<String> current = new HashSet<>();
+        for (GameServer server : allServers) {
+            if (!server.isLocal()) {
+                continue;
+            }
+            String key = serverKey(server);
+            current.add(key);
+
+            if (servers.put(key, server) == null) {
+                register(key, server);
+            }
+            schedule(key, Kind.LOG);
+            schedule(key, Kind.DEATHLOG);
+        }
+
+        for (String key : new ArrayList<>(servers.keySet())) {
+            if (!current.contains(key)) {
+                unregister(key);
+            }
+        }
+    }
+
+    private void register(String key, GameServer server) {
+        try {
+            Path logFile = connector.resolve(server, DeadsideLogParser.getServerLogPath(server));
+            Path logDir = logFile.getParent();
+            if (Files.isDirectory(logDir)) {
+                watch(logDir, new Target(key, Kind.LOG, logFile.getFileName().toString()));
+            } else {
+                logger.warn("Log directory {} not found for local server {}", logDir, server.getName());
+            }
+
+            Path deathlogDir = connector.resolve(server, server.getDeathlogsDirectory());
+            if (Files.isDirectory(deathlogDir)) {
+                watchTree(deathlogDir, new Target(key, Kind.DEATHLOG, null));
+            } else {
+                logger.warn("Deathlog directory {} not found for local server {}", deathlogDir, server.getName());
+            }
+            logger.info("Watching local logs of server {} in {}", server.getName(), server.getLocalPath());
+        } catch (IOException e) {
+            logger.error("Could not watch local logs of server {}: {}", server.getName(), e.getMessage(), e);
+        }
+    }
+
+    private void unregister(String key) {
+        GameServer server = servers.remove(key);
+        targets.entrySet().removeIf(entry -> {
+            entry.getValue().removeIf(target -> target.serverKey.equals(key));
+            if (entry.getValue().isEmpty()) {
+                entry.getKey().cancel();
+                return true;
+            }
+            return false;
+        });
+        if (server != null) {
+            logger.info("Stopped watching local logs of server {}", server.getName());
+        }
+    }
+
+    private void watch(Path directory, Target target) throws IOException {
+        WatchKey watchKey = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        List<Target> watchTargets = targets.computeIfAbsent(watchKey, k -> new CopyOnWriteArrayList<>());
+        // Registering a directory twice returns the same key
+        if (watchTargets.stream().noneMatch(t -> t.serverKey.equals(target.serverKey) && t.kind == target.kind)) {
+            watchTargets.add(target);
+        }
+    }
+
+    /**
+     * Watch a directory and all of its subdirectories
+     */
+    private void watchTree(Path root, Target target) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                watch(directory, target);
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            List<Target> watchTargets = targets.get(watchKey);
+            Path directory = (Path) watchKey.watchable();
+
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (watchTargets == null) {
+                    break;
+                }
+                for (Target target : watchTargets) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost, parse whatever may have changed
+                        schedule(target.serverKey, target.kind);
+                        continue;
+                    }
+
+                    Path changed = directory.resolve((Path) event.context());
+                    if (target.kind == Kind.LOG) {
+                        if (changed.getFileName().toString().equals(target.fileName)) {
+                            schedule(target.serverKey, Kind.LOG);
+                        }
+                    } else if (Files.isDirectory(changed)) {
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            watchNewDirectory(changed, target);
+                        }
+                    } else if (changed.getFileName().toString().toLowerCase().endsWith(".csv")) {
+                        schedule(target.serverKey, Kind.DEATHLOG);
+                    }
+                }
+            }
+
+            if (!watchKey.reset()) {
+                // The directory is gone
+                targets.remove(watchKey);
+            }
+        }
+    }
+
+    private void watchNewDirectory(Path directory, Target target) {
+        try {
+            watchTree(directory, target);
+            // Files may have been written before the directory was registered
+            schedule(target.serverKey, Kind.DEATHLOG);
+        } catch (IOException e) {
+            logger.warn("Could not watch new deathlog directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Queue a parse unless one is already waiting to run
+     */
+    private void schedule(String serverKey, Kind kind) {
+        String pendingKey = serverKey + "|" + kind;
+        if (!pending.add(pendingKey)) {
+            return;
+        }
+
+        try {
+            dispatcher.schedule(() -> {
+                pending.remove(pendingKey);
+                GameServer server = servers.get(serverKey);
+                if (server == null) {
+                    return;
+                }
+                try {
+                    if (kind == Kind.LOG) {
+                        onLogChanged.accept(server);
+                    } else {
+                        onDeathlogChanged.accept(server);
+                    }
+                } catch (Exception e) {
+                    logger.error("Error parsing local logs of server {}: {}", server.getName(), e.getMessage(), e);
+                }
+            }, debounce, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Rejected after shutdown
+            pending.remove(pendingKey);
+        }
+    }
+
+    private static String serverKey(GameServer server) {
+        return server.getGuildId() + ":" + server.getName();
+    }
+
+    private enum Kind {
+        LOG,
+        DEATHLOG
+    }
+
+    /**
+     * A server and file kind that a watched directory belongs to
+     */
+    private static final class Target {
+        private final String serverKey;
+        private final Kind kind;
+        // Only changes to this file count, or null for any CSV file
+        private final String fileName;
+
+        Target(String serverKey, Kind kind, String fileName) {
+            this.serverKey = serverKey;
+            this.kind = kind;
+            this.fileName = fileName;
+        }
+    }
+}
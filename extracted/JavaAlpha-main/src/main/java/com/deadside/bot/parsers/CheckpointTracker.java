@@ -0,0 +1,56 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.db.models.IngestionCheckpoint;
+import com.deadside.bot.db.repositories.IngestionCheckpointRepository;
+import com.deadside.bot.events.LogSource;
+import com.deadside.bot.sftp.FileTail;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads and saves a parser's ingestion checkpoints for one kind of log
+ * A server's saved checkpoint is handed out only the first time the parser sees the server after a
+ * start; from then on the in-memory read positions are ahead of it
+ */
+public class CheckpointTracker {
+    private final LogSource source;
+    private final IngestionCheckpointRepository repository = new IngestionCheckpointRepository();
+
+    // Servers whose saved checkpoint has already been looked up
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    public CheckpointTracker(LogSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Get the saved checkpoint of a server the first time it is processed
+     * @return The checkpoint, or null if it was already handed out or there is none
+     */
+    public IngestionCheckpoint loadOnce(GameServer server) {
+        if (!loaded.add(server.getGuildId() + ":" + server.getName())) {
+            return null;
+        }
+        return repository.find(server.getGuildId(), server.getName(), source.name());
+    }
+
+    /**
+     * Save how far a file has been processed
+     * Call only after the events of the lines up to the position have been delivered, see
+     * {@link com.deadside.bot.events.EventDispatcher#afterDelivered}
+     * @param server The game server
+     * @param file The file, as named in the parser
+     * @param position Position just past the last processed line, ignored if null
+     * @param size Size of the file when it was read
+     * @param mtime Modification time of the file when it was read
+     */
+    public void save(GameServer server, String file, FileTail.Position position, long size, long mtime) {
+        if (position == null) {
+            return;
+        }
+        repository.save(new IngestionCheckpoint(server.getGuildId(), server.getName(), source.name(),
+                file, position, size, mtime));
+    }
+}
@@ -0,0 +1,148 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.events.DecoderRegistry;
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LogSource;
+import com.deadside.bot.sftp.LineReader;
+import com.deadside.bot.sftp.MappedFileInputStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses a whole local log file in parallel, for backfills and full-history reprocessing
+ * The memory-mapped file is split into byte ranges that end on a line break, each range is decoded
+ * on a fork/join pool, and the per-range events are joined back together in file order.
+ * Files no larger than one chunk are parsed on the calling pool thread without splitting.
+ */
+public class ChunkedLogParser {
+    // Ranges at or below this size are decoded without splitting further
+    private static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+    // How much is read at a time while looking for the line break after a split point
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private final DecoderRegistry decoders = DecoderRegistry.getInstance();
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+
+    /**
+     * Parser running on the common fork/join pool
+     */
+    public ChunkedLogParser() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool The pool that decodes the chunks
+     * @param chunkSize Size in bytes at which a range is no longer split
+     */
+    public ChunkedLogParser(ForkJoinPool pool, long chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Decode every line of a file
+     * @param file The log file
+     * @param source The kind of file, which selects the decoders
+     * @return The events of the file, in the order they appear in it
+     */
+    public List<GameEvent> parse(Path file, LogSource source) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return pool.invoke(new ChunkTask(channel, source, 0, channel.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Decode the lines of a byte range that starts at the beginning of a line
+     */
+    private List<GameEvent> decodeRange(FileChannel channel, LogSource source, long start, long end) throws IOException {
+        List<GameEvent> events = new ArrayList<>();
+        try (LineReader reader = new LineReader(new MappedFileInputStream(channel, start, end))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                GameEvent event = decoders.decode(source, line);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Find the start of the first line that begins at or after an offset
+     * @return The offset just past the next line break, or end if the range has none
+     */
+    private static long nextLineStart(FileChannel channel, long offset, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = offset;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(SCAN_BUFFER_SIZE, end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    /**
+     * Decodes a range, splitting it in two on a line break while it is larger than a chunk
+     */
+    private final class ChunkTask extends RecursiveTask<List<GameEvent>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final LogSource source;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, LogSource source, long start, long end) {
+            this.channel = channel;
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<GameEvent> compute() {
+            try {
+                if (end - start > chunkSize) {
+                    long split = nextLineStart(channel, start + (end - start) / 2, end);
+                    if (split < end) {
+                        ChunkTask first = new ChunkTask(channel, source, start, split);
+                        first.fork();
+                        List<GameEvent> second = new ChunkTask(channel, source, split, end).compute();
+                        List<GameEvent> events = first.join();
+                        events.addAll(second);
+                        return events;
+                    }
+                }
+                return decodeRange(channel, source, start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,10 +1,26 @@
 package com.deadside.bot.parsers;
 
+import com.deadside.bot.config.Config;
 import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.db.models.IngestionCheckpoint;
+import com.deadside.bot.db.models.KillRecord;
 import com.deadside.bot.db.models.Player;
 import com.deadside.bot.db.repositories.PlayerRepository;
+import com.deadside.bot.events.DecoderRegistry;
+import com.deadside.bot.events.EventDispatcher;
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LogSource;
+import com.deadside.bot.events.ServerInterner;
+import com.deadside.bot.local.LocalFileConnector;
+import com.deadside.bot.sftp.FileTail;
+import com.deadside.bot.sftp.LineReader;
+import com.deadside.bot.sftp.RemoteFileCache;
 import com.deadside.bot.sftp.SftpConnector;
+import com.deadside.bot.sftp.SpoolMirror;
 import com.deadside.bot.utils.EmbedUtils;
+import com.deadside.bot.utils.OutboundScheduler;
+import com.deadside.bot.utils.TimestampCodec;
+import com.jcraft.jsch.SftpATTRS;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
@@ -13,10 +29,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.Color;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Parser for Deadside CSV death log files
@@ -27,26 +44,38 @@ public class DeadsideCsvParser {
     private final JDA jda;
     private final SftpConnector sftpConnector;
     private final PlayerRepository playerRepository;
+    private final int downloadBatchSize;
     
-    // Map to keep track of processed files for each server
-    private final Map<String, Set<String>> processedFiles = new HashMap<>();
+    // Size and mtime of each death log file as of its last processing
+    private final RemoteFileCache fileCache = new RemoteFileCache();
     
-    // Format of the CSV death log: timestamp;victim;victimId;killer;killerId;weapon;distance
-    private static final Pattern CSV_LINE_PATTERN = Pattern.compile("^\\d{4}\\.\\d{2}\\.\\d{2}-\\d{2}\\.\\d{2}\\.\\d{2};.*;.*;.*;.*;.*;\\d+;$");
-    private static final SimpleDateFormat CSV_DATE_FORMAT = new SimpleDateFormat("yyyy.MM.dd-HH.mm.ss");
+    // Local mirror of the death logs, or null to read them straight from the server
+    private final SpoolMirror spoolMirror;
     
-    // Death causes
-    private static final Set<String> SUICIDE_CAUSES = new HashSet<>(Arrays.asList(
-            "suicide_by_relocation", "suicide", "falling", "bleeding", "drowning", "starvation"
-    ));
+    // Reads the death logs of servers running on this machine
+    private final LocalFileConnector localConnector = new LocalFileConnector();
+    
+    // Decodes death log lines into kill and death events
+    private final DecoderRegistry decoders = DecoderRegistry.getInstance();
+    
+    // Hands decoded events to the killfeed and stats sinks and any other subscriber
+    private final EventDispatcher dispatcher = EventDispatcher.getInstance();
+    
+    // Stores each kill once, whichever parser reads it first
+    private final KillDeduplicator deduplicator = KillDeduplicator.getInstance();
+    
+    // Saved position in each server's newest processed death log, restored after a restart
+    private final CheckpointTracker checkpoints = new CheckpointTracker(LogSource.DEATHLOG);
     
     public DeadsideCsvParser(JDA jda, SftpConnector sftpConnector, PlayerRepository playerRepository) {
         this.jda = jda;
         this.sftpConnector = sftpConnector;
         this.playerRepository = playerRepository;
+        this.downloadBatchSize = Config.getInstance().getSftpParallelChannels() * 2;
+        this.spoolMirror = SpoolMirror.fromConfig(sftpConnector);
         
-        // Set timezone for date parsing
-        CSV_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+        dispatcher.subscribe(LogSource.DEATHLOG, GameEvent.Kill.class, this::handleKill);
+        dispatcher.subscribe(LogSource.DEATHLOG, GameEvent.Death.class, this::handleDeath);
     }
     
     /**
@@ -63,49 +92,101 @@ public class DeadsideCsvParser {
                 return 0;
             }
             
-            // Get all CSV files from the server
-            List<String> csvFiles = sftpConnector.findDeathlogFiles(server);
+            if (server.isLocal()) {
+                totalProcessed = processLocalDeathLogs(server);
+                if (totalProcessed > 0) {
+                    server.setLastProcessedTimestamp(System.currentTimeMillis());
+                }
+                return totalProcessed;
+            }
+            
+            // Get all CSV files from the server, sorted by name (which includes date)
+            Map<String, SftpATTRS> csvFiles = sftpConnector.findDeathlogFileAttributes(server);
             if (csvFiles.isEmpty()) {
                 return 0;
             }
             
-            // Get list of already processed files for this server
-            Set<String> processed = processedFiles.computeIfAbsent(
-                    server.getName(), k -> new HashSet<>());
+            // Forget files that have been removed from the server
+            fileCache.retainOnly(server, csvFiles.keySet());
+            
+            // After a restart, skip what the saved checkpoint shows was already processed
+            IngestionCheckpoint checkpoint = checkpoints.loadOnce(server);
+            if (checkpoint != null) {
+                resumeFromCheckpoint(server, csvFiles, checkpoint);
+            }
+            
+            // Collect the files that are new or have changed since they were last processed
+            List<String> changedFiles = new ArrayList<>();
+            for (Map.Entry<String, SftpATTRS> entry : csvFiles.entrySet()) {
+                if (!fileCache.isUnchanged(server, entry.getKey(), entry.getValue())) {
+                    changedFiles.add(entry.getKey());
+                }
+            }
             
-            // Sort files by name (which includes date)
-            Collections.sort(csvFiles);
+            // Entries older than this were handled on an earlier tick; only used for files without a read
+            // position, since everything after a known offset is new whatever its timestamp
+            long cutoff = server.getLastProcessedTimestamp();
+            // Whether every changed file was read and processed, so the cutoff may move forward
+            boolean complete = true;
             
-            // Process each file that hasn't been processed yet
-            for (String csvFile : csvFiles) {
-                // Skip already processed files
-                if (processed.contains(csvFile)) {
+            // Files read before are tailed from their position; with a spool, only the bytes appended since
+            // the last sync are fetched. Runs of files never read, as when catching up, are downloaded in
+            // parallel batches. Everything is processed in filename order.
+            int index = 0;
+            while (index < changedFiles.size()) {
+                String csvFile = changedFiles.get(index);
+                if (spoolMirror != null || hasReadPosition(server, csvFile)) {
+                    try {
+                        int deathsProcessed = processDeathLog(server, csvFile, cutoff);
+                        totalProcessed += deathsProcessed;
+                        markProcessed(server, csvFile, csvFiles.get(csvFile), deathsProcessed, readPosition(server, csvFile));
+                    } catch (Exception e) {
+                        complete = false;
+                        logger.error("Error processing death log file {} for server {}: {}", 
+                                csvFile, server.getName(), e.getMessage(), e);
+                    }
+                    index++;
                     continue;
                 }
                 
+                List<String> batch = new ArrayList<>();
+                while (index < changedFiles.size() && batch.size() < downloadBatchSize
+                        && !hasReadPosition(server, changedFiles.get(index))) {
+                    batch.add(changedFiles.get(index++));
+                }
+                List<byte[]> contents;
                 try {
-                    String content = sftpConnector.readDeathlogFile(server, csvFile);
-                    int deathsProcessed = processDeathLog(server, content);
-                    totalProcessed += deathsProcessed;
-                    
-                    // Mark as processed
-                    processed.add(csvFile);
-                    logger.info("Processed death log file {} for server {}, {} deaths", 
-                            csvFile, server.getName(), deathsProcessed);
+                    contents = sftpConnector.readDeathlogFiles(server, batch);
                 } catch (Exception e) {
-                    logger.error("Error processing death log file {} for server {}: {}", 
-                            csvFile, server.getName(), e.getMessage(), e);
+                    // Stop here so later files are not processed ahead of these ones
+                    complete = false;
+                    logger.error("Error downloading death log files {} for server {}: {}", 
+                            batch, server.getName(), e.getMessage(), e);
+                    break;
+                }
+                
+                for (int i = 0; i < batch.size(); i++) {
+                    String batchFile = batch.get(i);
+                    try {
+                        int deathsProcessed = processDeathLog(server, contents.get(i), cutoff);
+                        totalProcessed += deathsProcessed;
+                        
+                        // Later growth of the file is tailed from the end of this download
+                        FileTail.Position position = FileTail.Position.of(contents.get(i));
+                        sftpConnector.restoreTail(server, server.getDeathlogsDirectory() + "/" + batchFile, position);
+                        markProcessed(server, batchFile, csvFiles.get(batchFile), deathsProcessed, position);
+                    } catch (Exception e) {
+                        complete = false;
+                        logger.error("Error processing death log file {} for server {}: {}", 
+                                batchFile, server.getName(), e.getMessage(), e);
+                    }
                 }
             }
             
-            // Limit the size of the processed files set to prevent memory issues
-            if (processed.size() > 100) {
-                // Keep only the most recent 50 files
-                List<String> filesList = new ArrayList<>(processed);
-                Collections.sort(filesList);
-                Set<String> newProcessed = new HashSet<>(
-                        filesList.subList(Math.max(0, filesList.size() - 50), filesList.size()));
-                processedFiles.put(server.getName(), newProcessed);
+            // Update server's last processed timestamp only once every changed file has been handled,
+            // otherwise the files skipped this tick would be read next tick with a cutoff past their rows
+            if (complete && totalProcessed > 0) {
+                server.setLastProcessedTimestamp(System.currentTimeMillis());
             }
             
             return totalProcessed;
@@ -117,89 +198,216 @@ public class DeadsideCsvParser {
     }
     
     /**
-     * Process a death log file content
+     * Process the lines appended to the death logs of a server running on this machine
      * @param server The game server
-     * @param content The file content
      * @return Number of deaths processed
      */
-    private int processDeathLog(GameServer server, String content) {
-        if (content == null || content.isEmpty()) {
-            return 0;
-        }
-        
-        String[] lines = content.split("\\n");
-        int count = 0;
+    private int processLocalDeathLogs(GameServer server) throws IOException {
+        int totalProcessed = 0;
+        long cutoff = server.getLastProcessedTimestamp();
+        IngestionCheckpoint checkpoint = checkpoints.loadOnce(server);
         
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty()) {
-                continue;
-            }
-            
-            // Simple validation that this looks like a death log line
-            if (!CSV_LINE_PATTERN.matcher(line).matches()) {
-                continue;
-            }
-            
+        for (Map.Entry<String, BasicFileAttributes> entry : localConnector.findDeathlogFileAttributes(server).entrySet()) {
+            String csvFile = entry.getKey();
+            String path = server.getDeathlogsDirectory() + "/" + csvFile;
             try {
-                String[] parts = line.split(";");
-                if (parts.length < 7) {
-                    continue;
+                if (checkpoint != null) {
+                    int order = csvFile.compareTo(checkpoint.getFile());
+                    if (order < 0) {
+                        // Processed before the restart, only move the tail to the end of the file
+                        localConnector.skipToEnd(server, path);
+                        continue;
+                    } else if (order == 0) {
+                        localConnector.restoreTail(server, path, checkpoint.getPosition());
+                    }
                 }
                 
-                // Parse death log entry
-                String timestamp = parts[0];
-                String victim = parts[1];
-                String victimId = parts[2];
-                String killer = parts[3];
-                String killerId = parts[4];
-                String weapon = parts[5];
-                int distance = Integer.parseInt(parts[6]);
-                
-                // Skip old entries (based on timestamp)
-                try {
-                    Date deathTime = CSV_DATE_FORMAT.parse(timestamp);
-                    if (deathTime.getTime() < server.getLastProcessedTimestamp()) {
-                        continue;
+                // Lines after a known offset are new, so only a file read for the first time needs the cutoff
+                FileTail.Position start = localConnector.getTailPosition(server, path);
+                long minTime = start != null && start.offset() > 0 ? Long.MIN_VALUE : cutoff;
+                List<String> lines = localConnector.readNewLines(server, path);
+                int deathsProcessed = 0;
+                for (String line : lines) {
+                    if (processDeathLogLine(server, line, minTime)) {
+                        deathsProcessed++;
                     }
-                } catch (ParseException e) {
-                    logger.warn("Could not parse death timestamp: {}", timestamp);
+                }
+                if (!lines.isEmpty()) {
+                    FileTail.Position position = localConnector.getTailPosition(server, path);
+                    BasicFileAttributes attrs = entry.getValue();
+                    dispatcher.afterDelivered(server, LogSource.DEATHLOG, () -> checkpoints.save(server, csvFile,
+                            position, attrs.size(), attrs.lastModifiedTime().toMillis()));
                 }
                 
-                // Process death
-                processDeath(server, timestamp, victim, victimId, killer, killerId, weapon, distance);
-                count++;
+                if (deathsProcessed > 0) {
+                    logger.info("Processed local death log file {} for server {}, {} deaths", 
+                            csvFile, server.getName(), deathsProcessed);
+                }
+                totalProcessed += deathsProcessed;
             } catch (Exception e) {
-                logger.warn("Error processing death log line: {}", line, e);
+                logger.error("Error processing local death log file {} for server {}: {}", 
+                        csvFile, server.getName(), e.getMessage(), e);
             }
         }
-        
-        // Update server's last processed timestamp
-        if (count > 0) {
-            server.setLastProcessedTimestamp(System.currentTimeMillis());
+        return totalProcessed;
+    }
+    
+    /**
+     * Continue after a restart from the saved checkpoint
+     * Files that sort before the checkpoint's file were processed completely, and the checkpoint's file
+     * is read on from the saved offset
+     */
+    private void resumeFromCheckpoint(GameServer server, Map<String, SftpATTRS> csvFiles,
+                                      IngestionCheckpoint checkpoint) throws IOException {
+        for (Map.Entry<String, SftpATTRS> entry : csvFiles.entrySet()) {
+            String csvFile = entry.getKey();
+            SftpATTRS attrs = entry.getValue();
+            int order = csvFile.compareTo(checkpoint.getFile());
+            if (order < 0) {
+                fileCache.update(server, csvFile, attrs);
+            } else if (order == 0) {
+                String path = server.getDeathlogsDirectory() + "/" + csvFile;
+                if (spoolMirror != null) {
+                    spoolMirror.restoreParsedPosition(server, path, checkpoint.getPosition());
+                } else {
+                    sftpConnector.restoreTail(server, path, checkpoint.getPosition());
+                }
+                if (attrs.getSize() == checkpoint.getSize() && attrs.getMTime() * 1000L == checkpoint.getMtime()) {
+                    fileCache.update(server, csvFile, attrs);
+                }
+            }
         }
+        logger.info("Resuming death logs of server {} from {} at byte {}",
+                server.getName(), checkpoint.getFile(), checkpoint.getOffset());
+    }
+    
+    /**
+     * Check whether part of a remote death log has been read before, from a checkpoint or an earlier tick,
+     * so it is tailed from there instead of downloaded whole
+     */
+    private boolean hasReadPosition(GameServer server, String csvFile) {
+        FileTail.Position position = sftpConnector.getTailPosition(server, server.getDeathlogsDirectory() + "/" + csvFile);
+        return position != null && position.offset() > 0;
+    }
+    
+    /**
+     * Get how far a death log has been read, from its spooled copy or its tail
+     */
+    private FileTail.Position readPosition(GameServer server, String csvFile) throws IOException {
+        String path = server.getDeathlogsDirectory() + "/" + csvFile;
+        return spoolMirror != null
+                ? spoolMirror.getParsedPosition(server, path)
+                : sftpConnector.getTailPosition(server, path);
+    }
+    
+    /**
+     * Remember that a file has been processed in its current state, and save the checkpoint once the
+     * sinks have its events
+     */
+    private void markProcessed(GameServer server, String csvFile, SftpATTRS attrs, int deathsProcessed,
+                               FileTail.Position position) {
+        fileCache.update(server, csvFile, attrs);
+        dispatcher.afterDelivered(server, LogSource.DEATHLOG,
+                () -> checkpoints.save(server, csvFile, position, attrs.getSize(), attrs.getMTime() * 1000L));
+        logger.info("Processed death log file {} for server {}, {} deaths", 
+                csvFile, server.getName(), deathsProcessed);
+    }
+    
+    /**
+     * Read the part of a death log appended since it was last read, from the server or its spooled copy,
+     * and process its entries
+     * @param server The game server
+     * @param csvFile Path of the CSV file relative to the deathlogs directory
+     * @param cutoff Entries older than this timestamp are skipped if the file has no read position yet
+     * @return Number of deaths processed
+     */
+    private int processDeathLog(GameServer server, String csvFile, long cutoff) throws Exception {
+        // Rows after a known offset are new even if the server's clock is behind or they were written
+        // just before the last tick ended
+        FileTail.Position start = readPosition(server, csvFile);
+        long minTime = start != null && start.offset() > 0 ? Long.MIN_VALUE : cutoff;
+        AtomicInteger count = new AtomicInteger();
+        SftpConnector.LineHandler handler = (lineNumber, line) -> {
+            if (processDeathLogLine(server, line, minTime)) {
+                count.incrementAndGet();
+            }
+        };
         
+        String path = server.getDeathlogsDirectory() + "/" + csvFile;
+        if (spoolMirror != null) {
+            spoolMirror.readNewLines(server, path, handler);
+        } else {
+            long lineNumber = 0;
+            for (String line : sftpConnector.readNewLines(server, path)) {
+                handler.handle(lineNumber++, line);
+            }
+        }
+        return count.get();
+    }
+    
+    /**
+     * Process the entries of a downloaded death log file
+     * @param server The game server
+     * @param content The file content
+     * @param cutoff Entries older than this timestamp are skipped
+     * @return Number of deaths processed
+     */
+    private int processDeathLog(GameServer server, byte[] content, long cutoff) throws IOException {
+        int count = 0;
+        try (LineReader reader = new LineReader(new ByteArrayInputStream(content))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (processDeathLogLine(server, line, cutoff)) {
+                    count++;
+                }
+            }
+        }
         return count;
     }
     
     /**
-     * Process a death event
+     * Process a single death log line
+     * @return True if the line was a death that was processed
      */
-    private void processDeath(GameServer server, String timestamp, String victim, String victimId, 
-                             String killer, String killerId, String weapon, int distance) {
-        // Handle different death types
-        boolean isSuicide = SUICIDE_CAUSES.contains(weapon.toLowerCase()) || 
-                            victim.equals(killer);
+    private boolean processDeathLogLine(GameServer server, String line, long cutoff) {
+        GameEvent event = decoders.decode(LogSource.DEATHLOG, line, ServerInterner.of(server));
         
-        if (isSuicide) {
-            sendSuicideKillfeed(server, timestamp, victim, victimId, weapon);
-        } else {
-            sendPlayerKillKillfeed(server, timestamp, victim, victimId, killer, killerId, weapon, distance);
-            
-            // Update player stats
-            updateKillerStats(killer, killerId);
-            updateVictimStats(victim, victimId);
+        // Skip invalid lines and old entries (based on timestamp)
+        if (event == null || event.time() < cutoff) {
+            return false;
         }
+        
+        // Skip kills that were already ingested, by this parser or the killfeed parser
+        if (event instanceof GameEvent.Kill) {
+            GameEvent.Kill kill = (GameEvent.Kill) event;
+            KillRecord killRecord = new KillRecord(server.getGuildId(), server.getName(), kill.killer(), kill.victim(),
+                    kill.weapon(), kill.distance(), kill.time(), line.trim());
+            if (!deduplicator.claim(killRecord)) {
+                return false;
+            }
+        }
+        
+        dispatcher.publish(server, LogSource.DEATHLOG, event);
+        return true;
+    }
+    
+    /**
+     * Post a kill to the killfeed and update both players' stats
+     */
+    private void handleKill(GameServer server, GameEvent.Kill kill) {
+        sendPlayerKillKillfeed(server, TimestampCodec.UTC.format(kill.time()), kill.victim(), kill.victimId(),
+                kill.killer(), kill.killerId(), kill.weapon(), kill.distance());
+        
+        // Update player stats
+        updateKillerStats(kill.killer(), kill.killerId());
+        updateVictimStats(kill.victim(), kill.victimId());
+    }
+    
+    /**
+     * Post a suicide or environmental death to the killfeed
+     */
+    private void handleDeath(GameServer server, GameEvent.Death death) {
+        sendSuicideKillfeed(server, TimestampCodec.UTC.format(death.time()), death.player(), death.playerId(), death.cause());
     }
     
     /**
@@ -216,7 +424,7 @@ public class DeadsideCsvParser {
             
             // Update kills and score
             player.setKills(player.getKills() + 1);
-            player.setScore(player.getScore() + 10); // +10 points per kill
+            player.setScore(player.getScore() + PlayerRepository.SCORE_PER_KILL);
             
             // Add kill reward
             // TODO: Add economy reward here if implemented
@@ -251,7 +459,7 @@ public class DeadsideCsvParser {
      * Send killfeed message for player kill
      */
     private void sendPlayerKillKillfeed(GameServer server, String timestamp, String victim, String victimId,
-                                       String killer, String killerId, String weapon, int distance) {
+                                       String killer, String killerId, String weapon, long distance) {
         try {
             EmbedBuilder embed = new EmbedBuilder()
                     .setTitle("Player Kill")
@@ -307,9 +515,7 @@ public class DeadsideCsvParser {
             return;
         }
         
-        killfeedChannel.sendMessageEmbeds(embed).queue(
-                success -> logger.debug("Sent killfeed to channel {}", killfeedChannel.getId()),
-                error -> logger.error("Failed to send killfeed: {}", error.getMessage())
-        );
+        // Sent together with the other kills of the next moment, ahead of lower priority notices
+        OutboundScheduler.getInstance().send(killfeedChannel, embed, OutboundScheduler.Priority.KILL);
     }
 }
\ No newline at end of file
@@ -1,9 +1,26 @@
 package com.deadside.bot.parsers;
 
 import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.db.models.IngestionCheckpoint;
 import com.deadside.bot.db.repositories.GameServerRepository;
+import com.deadside.bot.events.DecoderRegistry;
+import com.deadside.bot.events.EventDispatcher;
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LogSource;
+import com.deadside.bot.events.ServerInterner;
+import com.deadside.bot.local.LocalFileConnector;
+import com.deadside.bot.schedulers.IngestionPool;
+import com.deadside.bot.sftp.FileTail;
+import com.deadside.bot.sftp.RemoteFileCache;
+import com.deadside.bot.sftp.ServerCircuitBreaker;
 import com.deadside.bot.sftp.SftpConnector;
+import com.deadside.bot.sftp.SpoolMirror;
 import com.deadside.bot.utils.EmbedUtils;
+import com.deadside.bot.utils.OutboundScheduler;
+import com.deadside.bot.utils.TimestampCodec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
@@ -12,13 +29,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Parser for Deadside.log files
@@ -31,19 +49,26 @@ public class DeadsideLogParser {
     private final SftpConnector sftpConnector;
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     
-    // Map to keep track of last processed line for each server
-    private final Map<String, Integer> lastLineProcessed = new HashMap<>();
+    // Size and mtime of each server's log as of the last read
+    private final RemoteFileCache fileCache = new RemoteFileCache();
     
-    // Regex patterns for different event types
-    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("\\[(\\d{4}\\.\\d{2}\\.\\d{2}-\\d{2}\\.\\d{2}\\.\\d{2}:\\d{3})\\]\\[\\s*\\d+\\]");
-    private static final Pattern PLAYER_JOIN_PATTERN = Pattern.compile("LogSFPS: \\[Login\\] Player (.+?) connected");
-    private static final Pattern PLAYER_LEAVE_PATTERN = Pattern.compile("LogSFPS: \\[Logout\\] Player (.+?) disconnected");
-    private static final Pattern PLAYER_KILLED_PATTERN = Pattern.compile("LogSFPS: \\[Kill\\] (.+?) killed (.+?) with (.+?) at distance (\\d+)");
-    private static final Pattern PLAYER_DIED_PATTERN = Pattern.compile("LogSFPS: \\[Death\\] (.+?) died from (.+?)");
-    private static final Pattern AIRDROP_PATTERN = Pattern.compile("LogSFPS: AirDrop switched to (\\w+)");
-    private static final Pattern HELI_CRASH_PATTERN = Pattern.compile("LogSFPS: Helicopter crash spawned at position (.+)");
-    private static final Pattern TRADER_EVENT_PATTERN = Pattern.compile("LogSFPS: Trader event started at (.+)");
-    private static final Pattern MISSION_PATTERN = Pattern.compile("LogSFPS: Mission (.+?) switched to (\\w+)");
+    // Local mirror of the logs, or null to read them straight from the server
+    private final SpoolMirror spoolMirror;
+    
+    private final ServerCircuitBreaker circuitBreaker = ServerCircuitBreaker.getInstance();
+    
+    // Reads the logs of servers running on this machine
+    private final LocalFileConnector localConnector = new LocalFileConnector();
+    
+    // Decodes log lines into events, which the dispatcher hands to the notification sinks
+    private final DecoderRegistry decoders = DecoderRegistry.getInstance();
+    private final EventDispatcher dispatcher = EventDispatcher.getInstance();
+    
+    // Runs the servers of a scheduled cycle in parallel
+    private final IngestionPool ingestionPool = IngestionPool.getInstance();
+    
+    // Saved read position of each server's log, restored after a restart
+    private final CheckpointTracker checkpoints = new CheckpointTracker(LogSource.SERVER_LOG);
     
     // Log parsing interval in seconds
     private static final int LOG_PARSE_INTERVAL = 60; // 1 minute
@@ -52,6 +77,8 @@ public class DeadsideLogParser {
         this.jda = jda;
         this.serverRepository = serverRepository;
         this.sftpConnector = sftpConnector;
+        this.spoolMirror = SpoolMirror.fromConfig(sftpConnector);
+        subscribeNotifications();
     }
     
     /**
@@ -71,69 +98,128 @@ public class DeadsideLogParser {
     }
     
     /**
-     * Process logs for all servers in the database
+     * Process logs for all servers in the database, in parallel on the ingestion pool
      */
     public void processAllServerLogs() {
         try {
-            List<GameServer> servers = serverRepository.findAll();
-            
-            for (GameServer server : servers) {
-                try {
-                    // Skip servers without log channel configured
-                    if (server.getLogChannelId() == 0) {
-                        continue;
-                    }
-                    
-                    parseServerLog(server);
-                } catch (Exception e) {
-                    logger.error("Error parsing logs for server {}: {}", server.getName(), e.getMessage(), e);
+            List<GameServer> servers = new ArrayList<>();
+            for (GameServer server : serverRepository.findAll()) {
+                // Skip servers without log channel configured
+                // Local servers are parsed by the local log watcher as soon as their log changes
+                if (server.getLogChannelId() != 0 && !server.isLocal()) {
+                    servers.add(server);
                 }
             }
+            
+            ingestionPool.runCycle("Log parsing", servers, server -> {
+                // Skip unreachable servers until their backoff has passed
+                if (!circuitBreaker.allowRequest(server, () -> sftpConnector.testConnection(server))) {
+                    return 0;
+                }
+                return parseServerLog(server);
+            });
         } catch (Exception e) {
             logger.error("Error in log parser scheduler: {}", e.getMessage(), e);
         }
     }
     
+    /**
+     * Process the log of a single server
+     * @param server The game server to process
+     */
+    public void processServerLog(GameServer server) {
+        if (server.getLogChannelId() == 0) {
+            return;
+        }
+        parseServerLog(server);
+    }
+    
     /**
      * Parse the log file for a specific server
+     * @return The number of new lines read
      */
-    private void parseServerLog(GameServer server) {
+    private int parseServerLog(GameServer server) {
         String logPath = getServerLogPath(server);
         
         try {
-            // Get the last line processed for this server
-            int lastLine = lastLineProcessed.getOrDefault(server.getName(), 0);
-            
-            // Read new lines from the log file
+            // Read only the lines appended since the last poll
             List<String> newLines;
             
+            IngestionCheckpoint checkpoint = checkpoints.loadOnce(server);
+            if (checkpoint != null && !checkpoint.getFile().equals(logPath)) {
+                checkpoint = null;
+            }
+            
+            if (server.isLocal()) {
+                // The tail itself checks the file size, so no stat is needed
+                try {
+                    if (checkpoint != null) {
+                        localConnector.restoreTail(server, logPath, checkpoint.getPosition());
+                    }
+                    newLines = localConnector.readNewLines(server, logPath);
+                } catch (NoSuchFileException e) {
+                    logger.warn("Log file not found for local server {}: {}", server.getName(), e.getFile());
+                    return 0;
+                }
+                if (!newLines.isEmpty()) {
+                    processLogLines(server, newLines);
+                    BasicFileAttributes localAttrs = Files.readAttributes(localConnector.resolve(server, logPath),
+                            BasicFileAttributes.class);
+                    FileTail.Position position = localConnector.getTailPosition(server, logPath);
+                    dispatcher.afterDelivered(server, LogSource.SERVER_LOG, () -> checkpoints.save(server, logPath,
+                            position, localAttrs.size(), localAttrs.lastModifiedTime().toMillis()));
+                }
+                return newLines.size();
+            }
+            
             try {
-                // Read lines after the last processed line
-                newLines = sftpConnector.readLinesAfter(server, logPath, lastLine);
+                // Continue from the saved checkpoint after a restart, so nothing is read or posted twice
+                if (checkpoint != null) {
+                    if (spoolMirror != null) {
+                        spoolMirror.restoreParsedPosition(server, logPath, checkpoint.getPosition());
+                    } else {
+                        sftpConnector.restoreTail(server, logPath, checkpoint.getPosition());
+                    }
+                }
                 
-                if (newLines.isEmpty()) {
-                    return;
+                // The stat skips the transfer while the log is unchanged, and its size is reused by the tail
+                SftpATTRS attrs = sftpConnector.stat(server, logPath);
+                if (fileCache.isUnchanged(server, logPath, attrs)) {
+                    return 0;
                 }
                 
-                // Update last processed line
-                lastLineProcessed.put(server.getName(), lastLine + newLines.size());
+                if (spoolMirror != null) {
+                    // Append the new bytes to the local copy and parse them from there
+                    List<String> spooled = new ArrayList<>();
+                    spoolMirror.readNewLines(server, logPath, (lineNumber, line) -> spooled.add(line));
+                    newLines = spooled;
+                } else {
+                    newLines = sftpConnector.readNewLines(server, logPath, attrs.getSize());
+                }
+                fileCache.update(server, logPath, attrs);
+                
+                if (newLines.isEmpty()) {
+                    return 0;
+                }
                 
-                // Process new lines
+                // Process new lines, then record how far the log has been handled once the sinks have its events
                 processLogLines(server, newLines);
-            } catch (Exception e) {
-                if (e.getMessage() != null && e.getMessage().contains("No such file")) {
-                    logger.warn("Log file not found for server {}: {}", server.getName(), logPath);
-                } else if (e.getMessage() != null && e.getMessage().contains("smaller than expected")) {
-                    // Log rotation detected, reset counter
-                    logger.info("Log rotation detected for server {}, resetting line counter", server.getName());
-                    lastLineProcessed.put(server.getName(), 0);
-                } else {
+                FileTail.Position position = spoolMirror != null
+                        ? spoolMirror.getParsedPosition(server, logPath)
+                        : sftpConnector.getTailPosition(server, logPath);
+                dispatcher.afterDelivered(server, LogSource.SERVER_LOG,
+                        () -> checkpoints.save(server, logPath, position, attrs.getSize(), attrs.getMTime() * 1000L));
+                return newLines.size();
+            } catch (SftpException e) {
+                if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
                     throw e;
                 }
+                logger.warn("Log file not found for server {}: {}", server.getName(), logPath);
             }
         } catch (Exception e) {
             logger.error("Error reading log file for server {}: {}", server.getName(), e.getMessage(), e);
         }
+        return 0;
     }
     
     /**
@@ -142,105 +228,23 @@ public class DeadsideLogParser {
     private void processLogLines(GameServer server, List<String> lines) {
         Set<String> joinedPlayers = new HashSet<>();
         Set<String> leftPlayers = new HashSet<>();
+        ServerInterner interner = ServerInterner.of(server);
         
         for (String line : lines) {
-            // Extract timestamp if present
-            String timestamp = "";
-            Matcher timestampMatcher = TIMESTAMP_PATTERN.matcher(line);
-            if (timestampMatcher.find()) {
-                timestamp = timestampMatcher.group(1);
-            }
-            
-            // Player join events
-            Matcher joinMatcher = PLAYER_JOIN_PATTERN.matcher(line);
-            if (joinMatcher.find()) {
-                String playerName = joinMatcher.group(1).trim();
-                joinedPlayers.add(playerName);
-                // Process individually for immediate notification
-                sendPlayerJoinNotification(server, playerName, timestamp);
+            // One pass over the line finds the event and its fields
+            GameEvent event = decoders.decode(LogSource.SERVER_LOG, line, interner);
+            if (event == null) {
                 continue;
             }
             
-            // Player leave events
-            Matcher leaveMatcher = PLAYER_LEAVE_PATTERN.matcher(line);
-            if (leaveMatcher.find()) {
-                String playerName = leaveMatcher.group(1).trim();
-                leftPlayers.add(playerName);
-                // Process individually for immediate notification
-                sendPlayerLeaveNotification(server, playerName, timestamp);
-                continue;
+            if (event instanceof GameEvent.PlayerJoin) {
+                joinedPlayers.add(((GameEvent.PlayerJoin) event).player());
+            } else if (event instanceof GameEvent.PlayerLeave) {
+                leftPlayers.add(((GameEvent.PlayerLeave) event).player());
             }
             
-            // Player killed events
-            Matcher killedMatcher = PLAYER_KILLED_PATTERN.matcher(line);
-            if (killedMatcher.find()) {
-                String killer = killedMatcher.group(1).trim();
-                String victim = killedMatcher.group(2).trim();
-                String weapon = killedMatcher.group(3).trim();
-                String distance = killedMatcher.group(4).trim();
-                
-                // Send kill notification
-                sendKillNotification(server, killer, victim, weapon, distance, timestamp);
-                continue;
-            }
-            
-            // Player died events
-            Matcher diedMatcher = PLAYER_DIED_PATTERN.matcher(line);
-            if (diedMatcher.find()) {
-                String player = diedMatcher.group(1).trim();
-                String cause = diedMatcher.group(2).trim();
-                
-                // Send death notification
-                sendDeathNotification(server, player, cause, timestamp);
-                continue;
-            }
-            
-            // Airdrop events
-            Matcher airdropMatcher = AIRDROP_PATTERN.matcher(line);
-            if (airdropMatcher.find()) {
-                String status = airdropMatcher.group(1).trim();
-                if (status.equalsIgnoreCase("Waiting")) {
-                    // Airdrop is now available
-                    sendEventNotification(server, "Airdrop Event", "An airdrop is inbound!", 
-                            "Status: " + status, Color.BLUE, timestamp);
-                } else if (status.equalsIgnoreCase("Dropped") || status.equalsIgnoreCase("Active")) {
-                    // Airdrop has been deployed
-                    sendEventNotification(server, "Airdrop Event", "An airdrop has been deployed!", 
-                            "Status: " + status, Color.BLUE, timestamp);
-                }
-                continue;
-            }
-            
-            // Helicopter crash events
-            Matcher heliMatcher = HELI_CRASH_PATTERN.matcher(line);
-            if (heliMatcher.find()) {
-                String position = heliMatcher.group(1).trim();
-                sendEventNotification(server, "Helicopter Crash", "A helicopter has crashed nearby!", 
-                        "Location: " + position, new Color(150, 75, 0), timestamp); // Brown
-                continue;
-            }
-            
-            // Trader events
-            Matcher traderMatcher = TRADER_EVENT_PATTERN.matcher(line);
-            if (traderMatcher.find()) {
-                String position = traderMatcher.group(1).trim();
-                sendEventNotification(server, "Trader Event", "A special trader has appeared!", 
-                        "Location: " + position, new Color(0, 128, 0), timestamp); // Green
-                continue;
-            }
-            
-            // Mission events
-            Matcher missionMatcher = MISSION_PATTERN.matcher(line);
-            if (missionMatcher.find()) {
-                String missionName = missionMatcher.group(1).trim();
-                String status = missionMatcher.group(2).trim();
-                
-                if (status.equalsIgnoreCase("READY") || status.equalsIgnoreCase("ACTIVE")) {
-                    sendEventNotification(server, "Mission Available", "A new mission is active!", 
-                            "Mission: " + missionName + "\nStatus: " + status, 
-                            new Color(148, 0, 211), timestamp); // Purple
-                }
-            }
+            // Notifications are sent by the sinks subscribed in the constructor
+            dispatcher.publish(server, LogSource.SERVER_LOG, event);
         }
         
         // Send summary if needed for multiple players
@@ -253,6 +257,55 @@ public class DeadsideLogParser {
         }
     }
     
+    /**
+     * Subscribe the Discord notifications to the events decoded from Deadside.log
+     */
+    private void subscribeNotifications() {
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.PlayerJoin.class, (server, join) ->
+                sendPlayerJoinNotification(server, join.player(), timestamp(join)));
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.PlayerLeave.class, (server, leave) ->
+                sendPlayerLeaveNotification(server, leave.player(), timestamp(leave)));
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.Kill.class, (server, kill) ->
+                sendKillNotification(server, kill.killer(), kill.victim(), kill.weapon(),
+                        String.valueOf(kill.distance()), timestamp(kill)));
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.Death.class, (server, death) ->
+                sendDeathNotification(server, death.player(), death.cause(), timestamp(death)));
+        
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.Airdrop.class, (server, airdrop) -> {
+            String status = airdrop.status();
+            if (status.equalsIgnoreCase("Waiting")) {
+                // Airdrop is now available
+                sendEventNotification(server, "Airdrop Event", "An airdrop is inbound!", 
+                        "Status: " + status, Color.BLUE, timestamp(airdrop));
+            } else if (status.equalsIgnoreCase("Dropped") || status.equalsIgnoreCase("Active")) {
+                // Airdrop has been deployed
+                sendEventNotification(server, "Airdrop Event", "An airdrop has been deployed!", 
+                        "Status: " + status, Color.BLUE, timestamp(airdrop));
+            }
+        });
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.HelicopterCrash.class, (server, crash) ->
+                sendEventNotification(server, "Helicopter Crash", "A helicopter has crashed nearby!", 
+                        "Location: " + crash.position(), new Color(150, 75, 0), timestamp(crash))); // Brown
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.Trader.class, (server, trader) ->
+                sendEventNotification(server, "Trader Event", "A special trader has appeared!", 
+                        "Location: " + trader.position(), new Color(0, 128, 0), timestamp(trader))); // Green
+        dispatcher.subscribe(LogSource.SERVER_LOG, GameEvent.Mission.class, (server, mission) -> {
+            String status = mission.status();
+            if (status.equalsIgnoreCase("READY") || status.equalsIgnoreCase("ACTIVE")) {
+                sendEventNotification(server, "Mission Available", "A new mission is active!", 
+                        "Mission: " + mission.mission() + "\nStatus: " + status, 
+                        new Color(148, 0, 211), timestamp(mission)); // Purple
+            }
+        });
+    }
+    
+    /**
+     * Timestamp of an event as written in Deadside.log, or an empty string if it had none
+     */
+    private static String timestamp(GameEvent event) {
+        return TimestampCodec.UTC.formatWithMillis(event.time());
+    }
+    
     /**
      * Send notification for player kill
      */
@@ -272,7 +325,7 @@ public class DeadsideLogParser {
             embed.setFooter(server.getName(), null);
         }
         
-        sendToLogChannel(server, embed.build());
+        sendToLogChannel(server, embed.build(), OutboundScheduler.Priority.KILL);
     }
     
     /**
@@ -291,7 +344,7 @@ public class DeadsideLogParser {
             embed.setFooter(server.getName(), null);
         }
         
-        sendToLogChannel(server, embed.build());
+        sendToLogChannel(server, embed.build(), OutboundScheduler.Priority.KILL);
     }
     
     /**
@@ -310,7 +363,7 @@ public class DeadsideLogParser {
             embed.setFooter(server.getName(), null);
         }
         
-        sendToLogChannel(server, embed.build());
+        sendToLogChannel(server, embed.build(), OutboundScheduler.Priority.PRESENCE);
     }
     
     /**
@@ -329,7 +382,7 @@ public class DeadsideLogParser {
             embed.setFooter(server.getName(), null);
         }
         
-        sendToLogChannel(server, embed.build());
+        sendToLogChannel(server, embed.build(), OutboundScheduler.Priority.PRESENCE);
     }
     
     /**
@@ -358,7 +411,7 @@ public class DeadsideLogParser {
                 .setTimestamp(new Date().toInstant())
                 .setFooter(server.getName(), null);
         
-        sendToLogChannel(server, embed.build());
+        sendToLogChannel(server, embed.build(), OutboundScheduler.Priority.PRESENCE);
     }
     
     /**
@@ -382,13 +435,14 @@ public class DeadsideLogParser {
             embed.setFooter(server.getName(), null);
         }
         
-        sendToLogChannel(server, embed.build());
+        sendToLogChannel(server, embed.build(), OutboundScheduler.Priority.EVENT);
     }
     
     /**
      * Send embed message to the server's log channel
      */
-    private void sendToLogChannel(GameServer server, net.dv8tion.jda.api.entities.MessageEmbed embed) {
+    private void sendToLogChannel(GameServer server, net.dv8tion.jda.api.entities.MessageEmbed embed,
+                                  OutboundScheduler.Priority priority) {
         Guild guild = jda.getGuildById(server.getGuildId());
         if (guild == null) {
             logger.warn("Guild not found for server {}: {}", server.getName(), server.getGuildId());
@@ -401,16 +455,14 @@ public class DeadsideLogParser {
             return;
         }
         
-        logChannel.sendMessageEmbeds(embed).queue(
-                success -> logger.debug("Sent log notification to channel {}", logChannel.getId()),
-                error -> logger.error("Failed to send log notification: {}", error.getMessage())
-        );
+        // Sent together with the other notifications of the next moment, most important first
+        OutboundScheduler.getInstance().send(logChannel, embed, priority);
     }
     
     /**
      * Get the path to the server log file
      */
-    private String getServerLogPath(GameServer server) {
+    public static String getServerLogPath(GameServer server) {
         // Base path for Deadside server logs
         String basePath = server.getGameServerId() + "/Deadside/Saved/Logs/";
         return basePath + "Deadside.log";
@@ -0,0 +1,397 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.BackfillCheckpoint;
+import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.db.models.KillRecord;
+import com.deadside.bot.db.repositories.BackfillCheckpointRepository;
+import com.deadside.bot.db.repositories.KillRecordRepository;
+import com.deadside.bot.db.repositories.PlayerRepository;
+import com.deadside.bot.events.DecoderRegistry;
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LogSource;
+import com.deadside.bot.events.ServerInterner;
+import com.deadside.bot.local.LocalFileConnector;
+import com.deadside.bot.sftp.LineReader;
+import com.deadside.bot.sftp.SftpConnector;
+import com.deadside.bot.utils.InternPool;
+import com.deadside.bot.utils.TimestampCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Imports the death log history of a server into kill_records and the player stats
+ * Files are downloaded in batches over parallel SFTP channels, each batch is decoded in parallel, and
+ * every file is written with unordered bulk writes followed by a checkpoint, so an interrupted backfill
+ * resumes with the next file. Stats are only added for kills that were not stored yet, so resuming a
+ * file that was partly written does not count its kills twice. Nothing is posted to Discord.
+ * Stats are updated like for live kills: kills, deaths and score of players already in the database.
+ * Only kills older than the oldest kill the live killfeed has stored are imported. When the killfeed has
+ * not stored anything yet, the newest file is left to it, since that is where it starts.
+ */
+public class DeathlogBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(DeathlogBackfill.class);
+    private static DeathlogBackfill instance;
+
+    // Servers backfilled at the same time
+    private static final int MAX_CONCURRENT_JOBS = 2;
+    // How often a running backfill logs its throughput
+    private static final long REPORT_INTERVAL_MS = 10000;
+    // yyyy.MM.dd-HH.mm.ss at the start of a death log file name
+    private static final int FILE_TIME_LENGTH = 19;
+
+    private final SftpConnector sftpConnector = new SftpConnector();
+    private final LocalFileConnector localConnector = new LocalFileConnector();
+    private final KillRecordRepository killRecordRepository = new KillRecordRepository();
+    private final PlayerRepository playerRepository = new PlayerRepository();
+    private final BackfillCheckpointRepository checkpointRepository = new BackfillCheckpointRepository();
+    private final DecoderRegistry decoders = DecoderRegistry.getInstance();
+    private final ExecutorService executor;
+    private final int insertBatchSize;
+    private final int downloadBatchSize;
+    // Set on shutdown, running jobs stop after the batch they are writing
+    private volatile boolean stopping = false;
+
+    // Running jobs, keyed by guild and server name
+    private final Map<String, Progress> running = new ConcurrentHashMap<>();
+
+    private DeathlogBackfill() {
+        Config config = Config.getInstance();
+        this.insertBatchSize = config.getBackfillBatchSize();
+        this.downloadBatchSize = config.getSftpParallelChannels() * 2;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(MAX_CONCURRENT_JOBS, r -> {
+            Thread thread = new Thread(r, "backfill-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized DeathlogBackfill getInstance() {
+        if (instance == null) {
+            instance = new DeathlogBackfill();
+        }
+        return instance;
+    }
+
+    /**
+     * Start or resume the backfill of a server in the background
+     * @param server The game server
+     * @return False if a backfill of the server is already running
+     */
+    public boolean start(GameServer server) {
+        Progress progress = new Progress();
+        if (stopping || running.putIfAbsent(serverKey(server), progress) != null) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(server, progress);
+                } catch (Exception e) {
+                    logger.error("Backfill of server {} failed: {}", server.getName(), e.getMessage(), e);
+                } finally {
+                    running.remove(serverKey(server));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(serverKey(server));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stop the running backfills after the batch they are writing, used when shutting down
+     * Must run before the SFTP sessions and the database are closed; a stopped backfill resumes from its
+     * checkpoint when it is started again
+     */
+    public void shutdown() {
+        stopping = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the progress of a running backfill
+     * @return The progress, or null if no backfill of the server is running
+     */
+    public Progress getProgress(GameServer server) {
+        return running.get(serverKey(server));
+    }
+
+    /**
+     * Get the checkpoint of the last backfill of a server
+     * @return The checkpoint, or null if the server was never backfilled
+     */
+    public BackfillCheckpoint getCheckpoint(GameServer server) {
+        return checkpointRepository.findByGuildIdAndServerName(server.getGuildId(), server.getName());
+    }
+
+    private void run(GameServer server, Progress progress) throws Exception {
+        List<String> files = server.isLocal()
+                ? new ArrayList<>(localConnector.findDeathlogFileAttributes(server).keySet())
+                : new ArrayList<>(sftpConnector.findDeathlogFileAttributes(server).keySet());
+        if (files.isEmpty()) {
+            logger.info("Backfill of server {}: no death log files found", server.getName());
+            return;
+        }
+
+        BackfillCheckpoint checkpoint = getCheckpoint(server);
+        if (checkpoint == null || checkpoint.isCompleted()) {
+            // The cutoff is fixed when a backfill starts, since the backfill's own records would move it
+            long oldestKill = killRecordRepository.findOldestTimestamp(server.getName(), server.getGuildId());
+            long cutoff = oldestKill >= 0 ? oldestKill : fileTime(files.get(files.size() - 1));
+            if (cutoff < 0) {
+                cutoff = System.currentTimeMillis();
+            }
+            checkpoint = new BackfillCheckpoint(server.getGuildId(), server.getName(), cutoff);
+        }
+
+        // Files are named after the time they were started, so later files only hold newer kills
+        long until = checkpoint.getUntil();
+        String lastFile = checkpoint.getLastFile();
+        List<String> pending = new ArrayList<>();
+        for (String file : files) {
+            long fileTime = fileTime(file);
+            if (file.compareTo(lastFile) > 0 && (fileTime < 0 || fileTime < until)) {
+                pending.add(file);
+            }
+        }
+        progress.filesTotal = pending.size();
+        logger.info("Backfill of server {}: {} files to import, kills before {}{}", server.getName(), pending.size(),
+                TimestampCodec.UTC.format(until), lastFile.isEmpty() ? "" : ", resuming after " + lastFile);
+
+        long lastReport = System.currentTimeMillis();
+        for (int start = 0; start < pending.size(); start += downloadBatchSize) {
+            if (stopping) {
+                logger.info("Backfill of server {} stopped for shutdown, it resumes after {}: {}", server.getName(),
+                        checkpoint.getLastFile(), progress.describe());
+                return;
+            }
+            List<String> batch = pending.subList(start, Math.min(start + downloadBatchSize, pending.size()));
+            List<byte[]> contents = download(server, batch);
+
+            // Decode the whole batch in parallel, then write it in file order
+            List<FileResult> results = IntStream.range(0, batch.size())
+                    .parallel()
+                    .mapToObj(i -> decode(server, contents.get(i), until))
+                    .collect(Collectors.toList());
+
+            for (int i = 0; i < batch.size(); i++) {
+                FileResult result = results.get(i);
+                if (!write(server, result)) {
+                    throw new IllegalStateException("Could not write " + batch.get(i) + ", the backfill will resume with it");
+                }
+                checkpoint.fileDone(batch.get(i), result.kills.size());
+                if (!checkpointRepository.save(checkpoint)) {
+                    throw new IllegalStateException("Could not save the checkpoint after " + batch.get(i));
+                }
+                progress.fileDone(contents.get(i).length, result.lines, result.kills.size());
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= REPORT_INTERVAL_MS) {
+                logger.info("Backfill of server {}: {}", server.getName(), progress.describe());
+                lastReport = now;
+            }
+        }
+
+        checkpoint.setCompleted(true);
+        checkpointRepository.save(checkpoint);
+        logger.info("Backfill of server {} completed: {}", server.getName(), progress.describe());
+    }
+
+    private List<byte[]> download(GameServer server, List<String> batch) throws Exception {
+        if (!server.isLocal()) {
+            return sftpConnector.readDeathlogFiles(server, batch);
+        }
+        List<byte[]> contents = new ArrayList<>(batch.size());
+        for (String file : batch) {
+            contents.add(Files.readAllBytes(localConnector.resolve(server, server.getDeathlogsDirectory() + "/" + file)));
+        }
+        return contents;
+    }
+
+    /**
+     * Decode the kills of a file that happened before the cutoff
+     */
+    private FileResult decode(GameServer server, byte[] content, long until) {
+        FileResult result = new FileResult();
+        ServerInterner interner = ServerInterner.of(server);
+        try (LineReader reader = new LineReader(new ByteArrayInputStream(content))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.lines++;
+                GameEvent event = decoders.decode(LogSource.DEATHLOG, line, interner);
+                if (event == null || event.time() < 0 || event.time() >= until) {
+                    continue;
+                }
+
+                // Deaths without a killer are not counted, as for live deaths
+                if (event instanceof GameEvent.Kill) {
+                    GameEvent.Kill kill = (GameEvent.Kill) event;
+                    result.kills.add(new KillRecord(server.getGuildId(), server.getName(), kill.killer(), kill.victim(),
+                            kill.weapon(), kill.distance(), kill.time(), line.trim()));
+                    result.killerIds.add(kill.killerId());
+                    result.victimIds.add(kill.victimId());
+                }
+            }
+        } catch (IOException e) {
+            // Reading from memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Write the kill records of a file and add the stats of the kills that were not stored before
+     * Each batch's stats are written right after its records, so a failure can at worst leave out the
+     * stats of one batch; a kill is never counted twice
+     * @return True if everything was written
+     */
+    private boolean write(GameServer server, FileResult result) {
+        for (int start = 0; start < result.kills.size(); start += insertBatchSize) {
+            int end = Math.min(start + insertBatchSize, result.kills.size());
+            BitSet inserted = killRecordRepository.insertUnordered(result.kills.subList(start, end));
+            if (inserted == null) {
+                return false;
+            }
+            
+            BatchStats players = new BatchStats(ServerInterner.of(server).players());
+            for (int i = inserted.nextSetBit(0); i >= 0; i = inserted.nextSetBit(i + 1)) {
+                PlayerRepository.StatsDelta killer = players.get(result.killerIds.get(start + i));
+                if (killer != null) {
+                    killer.addKill();
+                }
+                PlayerRepository.StatsDelta victim = players.get(result.victimIds.get(start + i));
+                if (victim != null) {
+                    victim.addDeath();
+                }
+            }
+            if (!playerRepository.bulkAddStats(players.values())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start time of a death log file, from its name
+     * @return Epoch milliseconds, or -1 if the name does not start with a timestamp
+     */
+    private static long fileTime(String file) {
+        String name = file.substring(file.lastIndexOf('/') + 1);
+        return name.length() < FILE_TIME_LENGTH ? -1 : TimestampCodec.UTC.parse(name, 0, FILE_TIME_LENGTH);
+    }
+
+    private static String serverKey(GameServer server) {
+        return server.getGuildId() + ":" + server.getName();
+    }
+
+    /**
+     * Stats of the players of one insert batch, indexed by their ids in the server's player pool
+     * The pool is taken once, so the ids stay valid even if the server's pool is replaced meanwhile;
+     * players it has no id for, once it is full, are kept by their player ID instead
+     */
+    private static final class BatchStats {
+        private final InternPool pool;
+        private final PlayerRepository.StatsDelta[] byId;
+        private final Map<String, PlayerRepository.StatsDelta> unpooled = new HashMap<>();
+        private final List<PlayerRepository.StatsDelta> players = new ArrayList<>();
+
+        BatchStats(InternPool pool) {
+            this.pool = pool;
+            this.byId = new PlayerRepository.StatsDelta[pool.idLimit()];
+        }
+
+        /**
+         * Stats of a player, or null if the line has no player ID to key them by
+         */
+        PlayerRepository.StatsDelta get(String playerId) {
+            if (playerId == null || playerId.isEmpty()) {
+                return null;
+            }
+            int id = pool.idOf(playerId);
+            PlayerRepository.StatsDelta delta = id >= 0 ? byId[id] : unpooled.get(playerId);
+            if (delta == null) {
+                delta = new PlayerRepository.StatsDelta(id >= 0 ? pool.get(id) : playerId);
+                if (id >= 0) {
+                    byId[id] = delta;
+                } else {
+                    unpooled.put(playerId, delta);
+                }
+                players.add(delta);
+            }
+            return delta;
+        }
+
+        List<PlayerRepository.StatsDelta> values() {
+            return players;
+        }
+    }
+
+    /**
+     * Kill records decoded from one file, with the player IDs of each kill
+     */
+    private static final class FileResult {
+        private final List<KillRecord> kills = new ArrayList<>();
+        private final List<String> killerIds = new ArrayList<>();
+        private final List<String> victimIds = new ArrayList<>();
+        private long lines;
+    }
+
+    /**
+     * Throughput of a running backfill
+     */
+    public static final class Progress {
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong lines = new AtomicLong();
+        private final AtomicLong kills = new AtomicLong();
+        private volatile int filesTotal;
+        private volatile int filesDone;
+
+        void fileDone(long fileBytes, long fileLines, int fileKills) {
+            bytes.addAndGet(fileBytes);
+            lines.addAndGet(fileLines);
+            kills.addAndGet(fileKills);
+            filesDone++;
+        }
+
+        /**
+         * Files, kills and rates so far, for logs and command replies
+         */
+        public String describe() {
+            double seconds = Math.max(1, System.currentTimeMillis() - startedAt) / 1000.0;
+            return String.format("%d/%d files, %d kills, %.0f lines/s, %.0f kills/s, %.1f MB/s",
+                    filesDone, filesTotal, kills.get(), lines.get() / seconds, kills.get() / seconds,
+                    bytes.get() / seconds / (1024 * 1024));
+        }
+    }
+}
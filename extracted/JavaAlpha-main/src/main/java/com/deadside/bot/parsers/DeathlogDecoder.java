@@ -0,0 +1,65 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LineDecoder;
+import com.deadside.bot.events.ServerInterner;
+import com.deadside.bot.utils.InternPool;
+import com.deadside.bot.utils.TimestampCodec;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decoder for death log CSV lines: timestamp;victim;victimId;killer;killerId;weapon;distance;
+ * Kills by another player become {@link GameEvent.Kill}, suicides and environmental deaths
+ * become {@link GameEvent.Death}. Death log timestamps are UTC.
+ */
+public class DeathlogDecoder implements LineDecoder {
+    private static final ThreadLocal<DeathlogTokenizer> TOKENIZER = ThreadLocal.withInitial(DeathlogTokenizer::new);
+
+    // Death causes that are not a kill by another player
+    private static final Set<String> SUICIDE_CAUSES = new HashSet<>(Arrays.asList(
+            "suicide_by_relocation", "suicide", "falling", "bleeding", "drowning", "starvation"
+    ));
+
+    @Override
+    public GameEvent decode(String line) {
+        return decode(line, null, null);
+    }
+
+    @Override
+    public GameEvent decode(String line, ServerInterner interner) {
+        return decode(line, interner.players(), interner.weapons());
+    }
+
+    /**
+     * Decode a line, taking names from the pools if they are given
+     */
+    private GameEvent decode(String line, InternPool players, InternPool weapons) {
+        line = line.trim();
+        DeathlogTokenizer tokenizer = TOKENIZER.get();
+        if (!tokenizer.tokenize(line) || tokenizer.getFieldCount() < 7) {
+            return null;
+        }
+        long time = tokenizer.parseTimestamp(0, TimestampCodec.UTC);
+        long distance = tokenizer.parseDistance(6);
+        if (time < 0 || distance < 0 || tokenizer.fieldEndsWith(6, 'm')) {
+            return null;
+        }
+
+        String victim = field(tokenizer, 1, players);
+        String victimId = field(tokenizer, 2, players);
+        String killer = field(tokenizer, 3, players);
+        String weapon = field(tokenizer, 5, weapons);
+        if (SUICIDE_CAUSES.contains(weapon.toLowerCase(Locale.ROOT)) || victim.equals(killer)) {
+            return new GameEvent.Death(time, victim, victimId, weapon);
+        }
+        return new GameEvent.Kill(time, killer, field(tokenizer, 4, players), victim, victimId, weapon, distance);
+    }
+
+    private static String field(DeathlogTokenizer tokenizer, int index, InternPool pool) {
+        return pool == null ? tokenizer.getField(index) : tokenizer.getField(index, pool);
+    }
+}
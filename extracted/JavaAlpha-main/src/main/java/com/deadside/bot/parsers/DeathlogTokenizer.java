@@ -0,0 +1,163 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.utils.InternPool;
+import com.deadside.bot.utils.TimestampCodec;
+
+/**
+ * Single-pass tokenizer for death log lines
+ * Scans a line once and records where each field starts and ends, so no regex runs and no
+ * substrings are created unless a caller asks for a field's text. Distances and timestamps are
+ * parsed straight from the characters. An instance reuses its offset buffers and is not thread-safe.
+ */
+public final class DeathlogTokenizer {
+    // Quoted killfeed lines have eight fields, death log CSVs seven plus optional extras
+    private static final int MAX_FIELDS = 16;
+
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private String line;
+    private int count;
+
+    /**
+     * Split a death log line: timestamp;victim;victimId;killer;killerId;weapon;distance;
+     * Every field, including the last, is terminated by a semicolon
+     * @param line The line, without its line terminator
+     * @return True if the line has a terminated field list
+     */
+    public boolean tokenize(String line) {
+        this.line = line;
+        count = 0;
+        int length = line.length();
+        if (length == 0 || line.charAt(length - 1) != ';') {
+            return false;
+        }
+
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(i) == ';') {
+                if (count == MAX_FIELDS) {
+                    // Extra fields are ignored
+                    break;
+                }
+                starts[count] = start;
+                ends[count] = i;
+                count++;
+                start = i + 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split a quoted killfeed line: "field","field",...
+     * Fields must be non-empty and may not contain quotes
+     * @param line The line, without its line terminator
+     * @return True if the whole line is a list of quoted fields
+     */
+    public boolean tokenizeQuoted(String line) {
+        this.line = line;
+        count = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            if (line.charAt(i) != '"' || count == MAX_FIELDS) {
+                return false;
+            }
+            int end = line.indexOf('"', i + 1);
+            if (end <= i + 1) {
+                return false;
+            }
+            starts[count] = i + 1;
+            ends[count] = end;
+            count++;
+
+            i = end + 1;
+            if (i < length) {
+                if (line.charAt(i) != ',') {
+                    return false;
+                }
+                i++;
+                if (i == length) {
+                    return false;
+                }
+            }
+        }
+        return count > 0;
+    }
+
+    /**
+     * @return Number of fields found by the last tokenize call
+     */
+    public int getFieldCount() {
+        return count;
+    }
+
+    /**
+     * Get the text of a field
+     * @param index Zero-based field index
+     */
+    public String getField(int index) {
+        return line.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Get the canonical instance of a field's text
+     * Text that is already pooled is found without creating a substring
+     * @param index Zero-based field index
+     * @param pool The pool to take the text from
+     */
+    public String getField(int index, InternPool pool) {
+        return pool.intern(line, starts[index], ends[index]);
+    }
+
+    /**
+     * Compare a field to a string without creating a substring
+     */
+    public boolean fieldEquals(int index, String value) {
+        int length = ends[index] - starts[index];
+        return length == value.length() && line.regionMatches(starts[index], value, 0, length);
+    }
+
+    /**
+     * Check whether a field ends with a character
+     */
+    public boolean fieldEndsWith(int index, char c) {
+        return ends[index] > starts[index] && line.charAt(ends[index] - 1) == c;
+    }
+
+    /**
+     * Parse a distance field: digits, optionally followed by an m
+     * @param index Zero-based field index
+     * @return The distance, or -1 if the field is not a distance
+     */
+    public long parseDistance(int index) {
+        int start = starts[index];
+        int end = ends[index];
+        if (end > start && line.charAt(end - 1) == 'm') {
+            end--;
+        }
+        if (end == start || end - start > 18) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parse a timestamp field
+     * @param index Zero-based field index
+     * @param codec Codec for the time zone the timestamp is written in
+     * @return Epoch milliseconds, or -1 if the field is not a valid timestamp
+     */
+    public long parseTimestamp(int index, TimestampCodec codec) {
+        return codec.parse(line, starts[index], ends[index]);
+    }
+}
@@ -0,0 +1,60 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.KillRecord;
+import com.deadside.bot.db.repositories.KillRecordRepository;
+import com.deadside.bot.utils.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes kill ingestion idempotent across every parser that reads the death logs
+ * A kill is claimed by storing its record under the unique content hash, so whichever parser reads a
+ * kill first posts it and counts it, and a kill read again by another parser or after a restart is
+ * skipped. A Bloom filter of recently claimed hashes answers repeats without a database round trip.
+ */
+public class KillDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(KillDeduplicator.class);
+    private static KillDeduplicator instance;
+
+    // A kill wrongly taken for a repeat is dropped, so the filter is sized for about one in a million
+    private static final double FALSE_POSITIVE_RATE = 1e-6;
+
+    private final KillRecordRepository killRecordRepository = new KillRecordRepository();
+    private final BloomFilter seen;
+
+    private KillDeduplicator() {
+        this.seen = new BloomFilter(Config.getInstance().getKillDedupCapacity(), FALSE_POSITIVE_RATE);
+    }
+
+    public static synchronized KillDeduplicator getInstance() {
+        if (instance == null) {
+            instance = new KillDeduplicator();
+        }
+        return instance;
+    }
+
+    /**
+     * Claim a kill for processing and store its record
+     * @param killRecord The kill, with its hash set
+     * @return True if the kill is new and should be posted and counted
+     */
+    public boolean claim(KillRecord killRecord) {
+        String hash = killRecord.getHash();
+        long high = Long.parseUnsignedLong(hash, 0, 16, 16);
+        long low = Long.parseUnsignedLong(hash, 16, 32, 16);
+        if (seen.mightContain(high, low)) {
+            logger.debug("Skipping repeated kill {} -> {} at {}", killRecord.getKiller(), killRecord.getVictim(),
+                    killRecord.getTimestamp());
+            return false;
+        }
+
+        boolean inserted = killRecordRepository.insertIfAbsent(killRecord);
+        seen.put(high, low);
+        if (!inserted) {
+            logger.debug("Skipping stored kill {} -> {} at {}", killRecord.getKiller(), killRecord.getVictim(),
+                    killRecord.getTimestamp());
+        }
+        return inserted;
+    }
+}
@@ -0,0 +1,50 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LineDecoder;
+import com.deadside.bot.events.ServerInterner;
+import com.deadside.bot.utils.InternPool;
+import com.deadside.bot.utils.TimestampCodec;
+
+/**
+ * Decoder for quoted killfeed lines:
+ * "1970/01/01-00:00:00","PlayerName1","killed","PlayerName2","with","WeaponName","from","100m"
+ * Killfeed timestamps are read as UTC like death log timestamps, so a kill found in both files gets the
+ * same time and the same content hash
+ */
+public class KillfeedDecoder implements LineDecoder {
+    private static final ThreadLocal<DeathlogTokenizer> TOKENIZER = ThreadLocal.withInitial(DeathlogTokenizer::new);
+    private static final TimestampCodec TIMESTAMPS = TimestampCodec.UTC;
+
+    @Override
+    public GameEvent decode(String line) {
+        return decode(line, null, null);
+    }
+
+    @Override
+    public GameEvent decode(String line, ServerInterner interner) {
+        return decode(line, interner.players(), interner.weapons());
+    }
+
+    /**
+     * Decode a line, taking names from the pools if they are given
+     */
+    private GameEvent decode(String line, InternPool players, InternPool weapons) {
+        DeathlogTokenizer tokenizer = TOKENIZER.get();
+        if (!tokenizer.tokenizeQuoted(line) || tokenizer.getFieldCount() != 8
+                || !tokenizer.fieldEquals(2, "killed") || !tokenizer.fieldEndsWith(7, 'm')) {
+            return null;
+        }
+        long distance = tokenizer.parseDistance(7);
+        long time = tokenizer.parseTimestamp(0, TIMESTAMPS);
+        if (distance < 0 || time < 0) {
+            return null;
+        }
+        return new GameEvent.Kill(time, field(tokenizer, 1, players), null, field(tokenizer, 3, players), null,
+                field(tokenizer, 5, weapons), distance);
+    }
+
+    private static String field(DeathlogTokenizer tokenizer, int index, InternPool pool) {
+        return pool == null ? tokenizer.getField(index) : tokenizer.getField(index, pool);
+    }
+}
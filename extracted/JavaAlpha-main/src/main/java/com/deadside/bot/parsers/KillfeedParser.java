@@ -3,22 +3,28 @@ package com.deadside.bot.parsers;
 import com.deadside.bot.db.models.GameServer;
 import com.deadside.bot.db.models.KillRecord;
 import com.deadside.bot.db.models.Player;
-import com.deadside.bot.db.repositories.KillRecordRepository;
 import com.deadside.bot.db.repositories.PlayerRepository;
+import com.deadside.bot.events.DecoderRegistry;
+import com.deadside.bot.events.EventDispatcher;
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LogSource;
+import com.deadside.bot.events.ServerInterner;
+import com.deadside.bot.local.LocalFileConnector;
+import com.deadside.bot.sftp.RemoteFileCache;
+import com.deadside.bot.sftp.SftpConnector;
 import com.deadside.bot.sftp.SftpManager;
 import com.deadside.bot.utils.EmbedUtils;
+import com.deadside.bot.utils.OutboundScheduler;
+import com.jcraft.jsch.SftpATTRS;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * Parser for Deadside killfeed CSV files
@@ -26,22 +32,27 @@ import java.util.regex.Pattern;
 public class KillfeedParser {
     private static final Logger logger = LoggerFactory.getLogger(KillfeedParser.class);
     private final SftpManager sftpManager;
-    private final KillRecordRepository killRecordRepository;
+    private final KillDeduplicator deduplicator = KillDeduplicator.getInstance();
+    private final EventDispatcher dispatcher = EventDispatcher.getInstance();
     private final PlayerRepository playerRepository;
     private final JDA jda;
     
-    // CSV format: "1970/01/01-00:00:00","PlayerName1","killed","PlayerName2","with","WeaponName","from","100m"
-    private static final Pattern CSV_PATTERN = Pattern.compile(
-            "\"([^\"]+)\",\"([^\"]+)\",\"([^\"]+)\",\"([^\"]+)\",\"([^\"]+)\",\"([^\"]+)\",\"([^\"]+)\",\"(\\d+)m\""
-    );
+    // Reads the killfeed files of servers running on this machine
+    private final LocalFileConnector localConnector = new LocalFileConnector();
+    
+    // Size and mtime of each killfeed file as of its last processing
+    private final RemoteFileCache fileCache = new RemoteFileCache();
     
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy/MM/dd-HH:mm:ss");
+    // CSV format: "1970/01/01-00:00:00","PlayerName1","killed","PlayerName2","with","WeaponName","from","100m"
+    private final DecoderRegistry decoders = DecoderRegistry.getInstance();
     
     public KillfeedParser(JDA jda) {
         this.jda = jda;
         this.sftpManager = new SftpManager();
-        this.killRecordRepository = new KillRecordRepository();
         this.playerRepository = new PlayerRepository();
+        
+        // Posting and stats run on the dispatcher's sink threads, not in the parse loop
+        dispatcher.subscribe(LogSource.KILLFEED, GameEvent.Kill.class, this::handleKill);
     }
     
     /**
@@ -57,15 +68,25 @@ public class KillfeedParser {
                 return 0;
             }
             
-            // Get CSV files
-            List<String> files = sftpManager.getKillfeedFiles(server);
+            // Get CSV files with their size and modification time
+            Map<String, SftpATTRS> fileAttributes = null;
+            Map<String, BasicFileAttributes> localAttributes = null;
+            List<String> files;
+            if (server.isLocal()) {
+                localAttributes = localConnector.findDeathlogFileAttributes(server);
+                files = new ArrayList<>(localAttributes.keySet());
+            } else {
+                fileAttributes = sftpManager.getKillfeedFileAttributes(server);
+                files = new ArrayList<>(fileAttributes.keySet());
+            }
+            
             if (files.isEmpty()) {
                 logger.warn("No killfeed files found for server: {}", server.getName());
                 return 0;
             }
             
-            // Sort files by name (should be date-based)
-            Collections.sort(files);
+            // Files come back sorted by name (should be date-based)
+            fileCache.retainOnly(server, files);
             
             String lastProcessedFile = server.getLastProcessedKillfeedFile();
             long lastProcessedLine = server.getLastProcessedKillfeedLine();
@@ -88,47 +109,53 @@ public class KillfeedParser {
                 lastProcessedLine = -1;
             }
             
-            // Process the file
-            String fileContent = sftpManager.readKillfeedFile(server, lastProcessedFile);
-            if (fileContent.isEmpty()) {
-                logger.warn("Empty or unreadable killfeed file: {} for server: {}", 
-                        lastProcessedFile, server.getName());
+            // Skip the download if the file has not changed since it was last processed
+            SftpATTRS attrs = fileAttributes == null ? null : fileAttributes.get(lastProcessedFile);
+            BasicFileAttributes localAttrs = localAttributes == null ? null : localAttributes.get(lastProcessedFile);
+            boolean unchanged = localAttrs != null
+                    ? fileCache.isUnchanged(server, lastProcessedFile, localAttrs.size(), localAttrs.lastModifiedTime().toMillis())
+                    : fileCache.isUnchanged(server, lastProcessedFile, attrs);
+            if (unchanged) {
+                logger.debug("Killfeed file {} unchanged for server: {}", lastProcessedFile, server.getName());
                 return 0;
             }
             
-            String[] lines = fileContent.split("\n");
+            // Stream the file, parsing each line after the last processed line
             List<KillRecord> newRecords = new ArrayList<>();
-            int processedKills = 0;
-            
-            // Process each line after the last processed line
-            for (int i = 0; i < lines.length; i++) {
-                if (i <= lastProcessedLine) continue;
+            long skipThrough = lastProcessedLine;
+            SftpConnector.LineHandler handler = (lineNumber, rawLine) -> {
+                if (lineNumber <= skipThrough) return;
                 
-                String line = lines[i].trim();
-                if (line.isEmpty()) continue;
+                String line = rawLine.trim();
+                if (line.isEmpty()) return;
                 
                 KillRecord killRecord = parseKillRecord(line, server);
                 if (killRecord != null) {
                     newRecords.add(killRecord);
-                    processedKills++;
-                    
-                    // Update player stats
-                    updatePlayerStats(killRecord);
-                    
-                    // Send to Discord channel
-                    sendKillfeedMessage(killfeedChannel, killRecord);
                 }
-                
-                lastProcessedLine = i;
-            }
+            };
+            long lineCount = server.isLocal()
+                    ? readLocalKillfeed(server, lastProcessedFile, handler)
+                    : sftpManager.forEachKillfeedLine(server, lastProcessedFile, handler);
             
-            // Save all new records to database
-            if (!newRecords.isEmpty()) {
-                killRecordRepository.saveAll(newRecords);
+            if (lineCount == 0) {
+                logger.warn("Empty or unreadable killfeed file: {} for server: {}", 
+                        lastProcessedFile, server.getName());
+                return 0;
             }
             
+            publishKills(server, newRecords);
+            
+            int processedKills = newRecords.size();
+            lastProcessedLine = Math.max(lastProcessedLine, lineCount - 1);
+            
             // Update server progress
             server.updateKillfeedProgress(lastProcessedFile, lastProcessedLine);
+            if (localAttrs != null) {
+                fileCache.update(server, lastProcessedFile, localAttrs.size(), localAttrs.lastModifiedTime().toMillis());
+            } else {
+                fileCache.update(server, lastProcessedFile, attrs);
+            }
             
             logger.info("Processed {} new kills for server: {}", processedKills, server.getName());
             return processedKills;
@@ -139,71 +166,140 @@ public class KillfeedParser {
     }
     
     /**
-     * Parse a CSV line into a KillRecord
+     * Poll the current killfeed file of a followed server and process only the bytes appended since the last poll
+     * Switching to a newer file is left to {@link #processServer}, which is used whenever a relist finds one
+     * @param server The game server to follow
+     * @param relist Whether to list the killfeed files to look for a newer one
+     * @return Number of new kill records processed
      */
-    private KillRecord parseKillRecord(String line, GameServer server) {
-        Matcher matcher = CSV_PATTERN.matcher(line);
-        if (!matcher.matches()) {
-            logger.warn("Killfeed line does not match expected format: {}", line);
-            return null;
-        }
-        
+    public int followServer(GameServer server, boolean relist) {
         try {
-            String timestamp = matcher.group(1);
-            String killer = matcher.group(2);
-            String action = matcher.group(3);
-            String victim = matcher.group(4);
-            String weapon = matcher.group(6);
-            String distanceStr = matcher.group(8);
+            String currentFile = server.getLastProcessedKillfeedFile();
+            if (currentFile.isEmpty()) {
+                return processServer(server);
+            }
+            
+            if (relist) {
+                // Files come back sorted by name, so the newest is last
+                List<String> files = new ArrayList<>(sftpManager.getKillfeedFileAttributes(server).keySet());
+                if (!files.isEmpty() && !files.get(files.size() - 1).equals(currentFile)) {
+                    return processServer(server);
+                }
+            }
             
-            if (!action.equals("killed")) {
-                logger.warn("Unknown killfeed action: {} in line: {}", action, line);
-                return null;
+            TextChannel killfeedChannel = jda.getTextChannelById(server.getKillfeedChannelId());
+            if (killfeedChannel == null) {
+                logger.warn("Killfeed channel not found for server: {}", server.getName());
+                return 0;
             }
             
-            long distance = Long.parseLong(distanceStr);
-            long timeMs = DATE_FORMAT.parse(timestamp).getTime();
+            // Only the bytes after the tracked offset are transferred
+            long lastProcessedLine = server.getLastProcessedKillfeedLine();
+            List<String> newLines = sftpManager.readNewKillfeedLines(server, currentFile, lastProcessedLine);
+            if (newLines.isEmpty()) {
+                return 0;
+            }
             
-            return new KillRecord(
-                    server.getGuildId(),
-                    server.getName(),
-                    killer,
-                    victim,
-                    weapon,
-                    distance,
-                    timeMs,
-                    line
-            );
-        } catch (ParseException e) {
-            logger.error("Error parsing killfeed timestamp in line: {}", line, e);
-            return null;
-        } catch (NumberFormatException e) {
-            logger.error("Error parsing killfeed distance in line: {}", line, e);
-            return null;
+            List<KillRecord> newRecords = new ArrayList<>();
+            for (String rawLine : newLines) {
+                String line = rawLine.trim();
+                if (line.isEmpty()) continue;
+                
+                KillRecord killRecord = parseKillRecord(line, server);
+                if (killRecord != null) {
+                    newRecords.add(killRecord);
+                }
+            }
+            
+            publishKills(server, newRecords);
+            server.updateKillfeedProgress(currentFile, lastProcessedLine + newLines.size());
+            
+            if (!newRecords.isEmpty()) {
+                logger.debug("Followed {} new kills for server: {}", newRecords.size(), server.getName());
+            }
+            return newRecords.size();
+        } catch (Exception e) {
+            logger.error("Error following killfeed for server: {}", server.getName(), e);
+            return 0;
+        }
+    }
+    
+    /**
+     * Store the kills and queue them for the stats and Discord sinks
+     * Kills that were already stored, by this parser or the death log parser, are skipped
+     */
+    private void publishKills(GameServer server, List<KillRecord> newRecords) {
+        for (KillRecord killRecord : newRecords) {
+            if (deduplicator.claim(killRecord)) {
+                dispatcher.publish(server, LogSource.KILLFEED, new GameEvent.Kill(killRecord.getTimestamp(),
+                        killRecord.getKiller(), null, killRecord.getVictim(), null, killRecord.getWeapon(),
+                        killRecord.getDistance()));
+            }
+        }
+    }
+    
+    /**
+     * Update player stats for a kill and post it to the killfeed channel
+     */
+    private void handleKill(GameServer server, GameEvent.Kill kill) {
+        updatePlayerStats(kill);
+        sendKillfeedMessage(jda.getTextChannelById(server.getKillfeedChannelId()), kill);
+    }
+    
+    /**
+     * Stream a killfeed file of a server running on this machine
+     * @return The number of lines in the file, or 0 if it could not be read
+     */
+    private long readLocalKillfeed(GameServer server, String filename, SftpConnector.LineHandler handler) {
+        try {
+            return localConnector.forEachDeathlogLine(server, filename, handler);
         } catch (Exception e) {
-            logger.error("Error parsing killfeed line: {}", line, e);
+            logger.error("Failed to read local killfeed file: {}", filename, e);
+            return 0;
+        }
+    }
+    
+    /**
+     * Parse a CSV line into a KillRecord
+     */
+    private KillRecord parseKillRecord(String line, GameServer server) {
+        GameEvent event = decoders.decode(LogSource.KILLFEED, line, ServerInterner.of(server));
+        if (!(event instanceof GameEvent.Kill)) {
+            logger.warn("Killfeed line does not match expected format: {}", line);
             return null;
         }
+        
+        GameEvent.Kill kill = (GameEvent.Kill) event;
+        return new KillRecord(
+                server.getGuildId(),
+                server.getName(),
+                kill.killer(),
+                kill.victim(),
+                kill.weapon(),
+                kill.distance(),
+                kill.time(),
+                line
+        );
     }
     
     /**
-     * Update player statistics from a kill record
+     * Update player statistics from a kill
      */
-    private void updatePlayerStats(KillRecord record) {
+    private void updatePlayerStats(GameEvent.Kill kill) {
         try {
             // Find or create killer player
-            Player killer = playerRepository.findByName(record.getKiller());
+            Player killer = playerRepository.findByName(kill.killer());
             if (killer == null) {
                 // Create new player with a generated ID based on name
-                killer = new Player(record.getKiller().toLowerCase().replace(" ", "_") + "_id", record.getKiller());
+                killer = new Player(kill.killer().toLowerCase().replace(" ", "_") + "_id", kill.killer());
                 playerRepository.save(killer);
             }
             
             // Find or create victim player
-            Player victim = playerRepository.findByName(record.getVictim());
+            Player victim = playerRepository.findByName(kill.victim());
             if (victim == null) {
                 // Create new player with a generated ID based on name
-                victim = new Player(record.getVictim().toLowerCase().replace(" ", "_") + "_id", record.getVictim());
+                victim = new Player(kill.victim().toLowerCase().replace(" ", "_") + "_id", kill.victim());
                 playerRepository.save(victim);
             }
             
@@ -216,41 +312,41 @@ public class KillfeedParser {
             playerRepository.save(victim);
             
             // Track weapon stats
-            if (killer.getMostUsedWeapon().equals(record.getWeapon())) {
+            if (killer.getMostUsedWeapon().equals(kill.weapon())) {
                 killer.setMostUsedWeaponKills(killer.getMostUsedWeaponKills() + 1);
             } else if (killer.getMostUsedWeaponKills() == 0) {
-                killer.setMostUsedWeapon(record.getWeapon());
+                killer.setMostUsedWeapon(kill.weapon());
                 killer.setMostUsedWeaponKills(1);
             }
             // More weapon tracking logic would go here
             
             // Track victim stats
-            if (killer.getMostKilledPlayer().equals(record.getVictim())) {
+            if (killer.getMostKilledPlayer().equals(kill.victim())) {
                 killer.setMostKilledPlayerCount(killer.getMostKilledPlayerCount() + 1);
             } else if (killer.getMostKilledPlayerCount() == 0) {
-                killer.setMostKilledPlayer(record.getVictim());
+                killer.setMostKilledPlayer(kill.victim());
                 killer.setMostKilledPlayerCount(1);
             }
             // More victim tracking logic would go here
             
             // Track killer stats for victim
-            if (victim.getKilledByMost().equals(record.getKiller())) {
+            if (victim.getKilledByMost().equals(kill.killer())) {
                 victim.setKilledByMostCount(victim.getKilledByMostCount() + 1);
             } else if (victim.getKilledByMostCount() == 0) {
-                victim.setKilledByMost(record.getKiller());
+                victim.setKilledByMost(kill.killer());
                 victim.setKilledByMostCount(1);
             }
             // More killer tracking logic would go here
         } catch (Exception e) {
-            logger.error("Error updating player stats for kill record: {} -> {}", 
-                    record.getKiller(), record.getVictim(), e);
+            logger.error("Error updating player stats for kill: {} -> {}", 
+                    kill.killer(), kill.victim(), e);
         }
     }
     
     /**
      * Send a killfeed message to Discord
      */
-    private void sendKillfeedMessage(TextChannel channel, KillRecord record) {
+    private void sendKillfeedMessage(TextChannel channel, GameEvent.Kill kill) {
         if (channel == null) return;
         
         String title = "🎯 Killfeed";
@@ -259,13 +355,14 @@ public class KillfeedParser {
                 "Weapon: **%s**\n" +
                 "Distance: **%d m**\n" +
                 "Time: <t:%d:R>",
-                record.getKiller(),
-                record.getVictim(),
-                record.getWeapon(),
-                record.getDistance(),
-                record.getTimestamp() / 1000
+                kill.killer(),
+                kill.victim(),
+                kill.weapon(),
+                kill.distance(),
+                kill.time() / 1000
         );
         
-        channel.sendMessageEmbeds(EmbedUtils.killfeedEmbed(title, description)).queue();
+        OutboundScheduler.getInstance().send(channel, EmbedUtils.killfeedEmbed(title, description),
+                OutboundScheduler.Priority.KILL);
     }
 }
@@ -0,0 +1,239 @@
+package com.deadside.bot.parsers;
+
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LineDecoder;
+import com.deadside.bot.utils.TimestampCodec;
+
+/**
+ * Single-pass classifier for Deadside.log lines
+ * Finds the LogSFPS marker once and dispatches on the token that follows it, so a line is scanned
+ * a single time instead of once per event pattern. Lines without the marker are rejected after one
+ * substring search, and only the fields of the matched event are extracted.
+ */
+public final class LogEventClassifier implements LineDecoder {
+    private static final String MARKER = "LogSFPS: ";
+
+    private static final String LOGIN = "[Login] Player ";
+    private static final String LOGOUT = "[Logout] Player ";
+    private static final String KILL = "[Kill] ";
+    private static final String DEATH = "[Death] ";
+    private static final String MISSION_FAIL = "[USFPSACMission::Fail] ";
+    private static final String VEHICLE_SPAWN = "[ASFPSVehicleSpawnPoint] Spawned vehicle ";
+    private static final String VEHICLE_ADD = "[ASFPSGameMode::NewVehicle_Add] Add vehicle ";
+    private static final String VEHICLE_DEL = "[ASFPSGameMode::NewVehicle_Del] Del vehicle ";
+    private static final String AIRDROP = "AirDrop switched to ";
+    private static final String HELI_CRASH = "Helicopter crash spawned at position ";
+    private static final String TRADER = "Trader event started at ";
+    private static final String MISSION = "Mission ";
+
+    // [yyyy.MM.dd-HH.mm.ss:SSS]
+    private static final int TIMESTAMP_LENGTH = 25;
+
+    /**
+     * Classify a log line
+     * @param line A line of Deadside.log
+     * @return The event, or null if the line is not one of the known events
+     */
+    @Override
+    public GameEvent decode(String line) {
+        int marker = line.indexOf(MARKER);
+        if (marker < 0) {
+            return null;
+        }
+        int start = marker + MARKER.length();
+        if (start >= line.length()) {
+            return null;
+        }
+
+        switch (line.charAt(start)) {
+            case '[':
+                if (line.startsWith(LOGIN, start)) {
+                    String player = before(line, start + LOGIN.length(), " connected");
+                    return player == null ? null : new GameEvent.PlayerJoin(time(line), player.trim());
+                }
+                if (line.startsWith(LOGOUT, start)) {
+                    String player = before(line, start + LOGOUT.length(), " disconnected");
+                    return player == null ? null : new GameEvent.PlayerLeave(time(line), player.trim());
+                }
+                if (line.startsWith(KILL, start)) {
+                    return parseKill(line, start + KILL.length());
+                }
+                if (line.startsWith(DEATH, start)) {
+                    return parseDeath(line, start + DEATH.length());
+                }
+                if (line.startsWith(MISSION_FAIL, start)) {
+                    String details = rest(line, start + MISSION_FAIL.length());
+                    return details == null ? null : new GameEvent.MissionFail(time(line), details);
+                }
+                if (line.startsWith(VEHICLE_SPAWN, start)) {
+                    return parseVehicle(line, start + VEHICLE_SPAWN.length(), GameEvent.VehicleAction.SPAWNED, " at ");
+                }
+                if (line.startsWith(VEHICLE_ADD, start)) {
+                    return parseVehicle(line, start + VEHICLE_ADD.length(), GameEvent.VehicleAction.ADDED, " Total ");
+                }
+                if (line.startsWith(VEHICLE_DEL, start)) {
+                    return parseVehicle(line, start + VEHICLE_DEL.length(), GameEvent.VehicleAction.REMOVED, " Total ");
+                }
+                return null;
+            case 'A':
+                if (line.startsWith(AIRDROP, start)) {
+                    String status = word(line, start + AIRDROP.length());
+                    return status == null ? null : new GameEvent.Airdrop(time(line), status);
+                }
+                return null;
+            case 'H':
+                if (line.startsWith(HELI_CRASH, start)) {
+                    String position = rest(line, start + HELI_CRASH.length());
+                    return position == null ? null : new GameEvent.HelicopterCrash(time(line), position);
+                }
+                return null;
+            case 'T':
+                if (line.startsWith(TRADER, start)) {
+                    String position = rest(line, start + TRADER.length());
+                    return position == null ? null : new GameEvent.Trader(time(line), position);
+                }
+                return null;
+            case 'M':
+                if (line.startsWith(MISSION, start)) {
+                    return parseMission(line, start + MISSION.length());
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * [Kill] killer killed victim with weapon at distance 123
+     */
+    private static GameEvent parseKill(String line, int start) {
+        String killer = before(line, start, " killed ");
+        if (killer == null) {
+            return null;
+        }
+        int victimStart = start + killer.length() + " killed ".length();
+        String victim = before(line, victimStart, " with ");
+        if (victim == null) {
+            return null;
+        }
+        int weaponStart = victimStart + victim.length() + " with ".length();
+        String weapon = before(line, weaponStart, " at distance ");
+        if (weapon == null) {
+            return null;
+        }
+        long distance = number(line, weaponStart + weapon.length() + " at distance ".length());
+        if (distance < 0) {
+            return null;
+        }
+        return new GameEvent.Kill(time(line), killer.trim(), null, victim.trim(), null, weapon.trim(), distance);
+    }
+
+    /**
+     * [Death] player died from cause
+     */
+    private static GameEvent parseDeath(String line, int start) {
+        String player = before(line, start, " died from ");
+        if (player == null) {
+            return null;
+        }
+        String cause = rest(line, start + player.length() + " died from ".length());
+        return cause == null ? null : new GameEvent.Death(time(line), player.trim(), null, cause);
+    }
+
+    /**
+     * Mission name switched to STATUS, or Mission name will respawn in 1800
+     */
+    private static GameEvent parseMission(String line, int start) {
+        String mission = before(line, start, " switched to ");
+        if (mission != null) {
+            String status = word(line, start + mission.length() + " switched to ".length());
+            return status == null ? null : new GameEvent.Mission(time(line), mission.trim(), status);
+        }
+
+        mission = before(line, start, " will respawn in ");
+        if (mission != null) {
+            long seconds = number(line, start + mission.length() + " will respawn in ".length());
+            if (seconds >= 0 && seconds <= Integer.MAX_VALUE) {
+                return new GameEvent.MissionRespawn(time(line), mission.trim(), (int) seconds);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * vehicle at spawn point, or vehicle Total 34
+     */
+    private static GameEvent parseVehicle(String line, int start, GameEvent.VehicleAction action, String separator) {
+        String vehicle = word(line, start);
+        if (vehicle == null || !line.startsWith(separator, start + vehicle.length())) {
+            return null;
+        }
+        String details = word(line, start + vehicle.length() + separator.length());
+        return details == null ? null : new GameEvent.Vehicle(time(line), action, vehicle, details);
+    }
+
+    /**
+     * Text from start up to the first occurrence of a delimiter, at least one character long
+     */
+    private static String before(String line, int start, String delimiter) {
+        if (start >= line.length()) {
+            return null;
+        }
+        int end = line.indexOf(delimiter, start + 1);
+        return end < 0 ? null : line.substring(start, end);
+    }
+
+    /**
+     * Word characters starting at start, or null if there are none
+     */
+    private static String word(String line, int start) {
+        int end = start;
+        while (end < line.length() && isWordChar(line.charAt(end))) {
+            end++;
+        }
+        return end == start ? null : line.substring(start, end);
+    }
+
+    /**
+     * Decimal number starting at start, or -1 if there is none
+     */
+    private static long number(String line, int start) {
+        long value = 0;
+        int end = start;
+        while (end < line.length() && end - start < 18 && isDigit(line.charAt(end))) {
+            value = value * 10 + (line.charAt(end) - '0');
+            end++;
+        }
+        return end == start ? -1 : value;
+    }
+
+    /**
+     * Trimmed rest of the line, or null if it is empty
+     */
+    private static String rest(String line, int start) {
+        if (start >= line.length()) {
+            return null;
+        }
+        String rest = line.substring(start).trim();
+        return rest.isEmpty() ? null : rest;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Time of a line starting with [yyyy.MM.dd-HH.mm.ss:SSS][frame], in UTC
+     * @return Epoch milliseconds, or -1 if the line has no timestamp
+     */
+    private static long time(String line) {
+        if (line.length() <= TIMESTAMP_LENGTH || line.charAt(TIMESTAMP_LENGTH) != '[') {
+            return -1;
+        }
+        return TimestampCodec.UTC.parse(line, 0, TIMESTAMP_LENGTH);
+    }
+}
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -78,36 +79,33 @@ public class LogParser {
                 lastProcessedLine = -1;
             }
             
-            // Process the file
-            String fileContent = sftpManager.readLogFile(server, lastProcessedFile);
-            if (fileContent.isEmpty()) {
-                logger.warn("Empty or unreadable log file: {} for server: {}", 
-                        lastProcessedFile, server.getName());
-                return 0;
-            }
-            
-            String[] lines = fileContent.split("\n");
-            int processedEvents = 0;
-            
-            // Process each line after the last processed line
-            for (int i = 0; i < lines.length; i++) {
-                if (i <= lastProcessedLine) continue;
+            // Stream the file, parsing each line after the last processed line
+            AtomicInteger processedEvents = new AtomicInteger();
+            long skipThrough = lastProcessedLine;
+            long lineCount = sftpManager.forEachLogLine(server, lastProcessedFile, (lineNumber, rawLine) -> {
+                if (lineNumber <= skipThrough) return;
                 
-                String line = lines[i].trim();
-                if (line.isEmpty()) continue;
+                String line = rawLine.trim();
+                if (line.isEmpty()) return;
                 
                 if (parseLogLine(line)) {
-                    processedEvents++;
+                    processedEvents.incrementAndGet();
                 }
-                
-                lastProcessedLine = i;
+            });
+            
+            if (lineCount == 0) {
+                logger.warn("Empty or unreadable log file: {} for server: {}", 
+                        lastProcessedFile, server.getName());
+                return 0;
             }
             
+            lastProcessedLine = Math.max(lastProcessedLine, lineCount - 1);
+            
             // Update server progress
             server.updateLogProgress(lastProcessedFile, lastProcessedLine);
             
-            logger.info("Processed {} new log events for server: {}", processedEvents, server.getName());
-            return processedEvents;
+            logger.info("Processed {} new log events for server: {}", processedEvents.get(), server.getName());
+            return processedEvents.get();
         } catch (Exception e) {
             logger.error("Error processing logs for server: {}", server.getName(), e);
             return 0;
@@ -0,0 +1,157 @@
+package com.deadside.bot.schedulers;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.GameServer;
+import com.deadside.bot.events.EventDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded work-stealing pool shared by the per-server ingestion jobs
+ * A cycle hands each server to the pool and returns at once, so one slow server no longer holds
+ * up the rest or delays the next cycle. A job runs at most one task per server at a time: a server
+ * still busy from the previous cycle is skipped, which keeps its files processed in order.
+ */
+public class IngestionPool {
+    private static final Logger logger = LoggerFactory.getLogger(IngestionPool.class);
+    private static IngestionPool instance;
+
+    private final ForkJoinPool pool;
+    // Job and server pairs with a task queued or running
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private IngestionPool() {
+        int parallelism = Config.getInstance().getIngestionParallelism();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(
+                parallelism,
+                p -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    thread.setName("ingestion-" + threadCount.incrementAndGet());
+                    return thread;
+                },
+                null,
+                true // FIFO order for tasks that are never joined
+        );
+        logger.info("Ingestion pool started with {} threads", parallelism);
+    }
+
+    public static synchronized IngestionPool getInstance() {
+        if (instance == null) {
+            instance = new IngestionPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Run a job for every server on the pool
+     * A summary is logged when the last task of the cycle finishes
+     * @param job Name of the job, used for the summary and to track servers in flight
+     * @param servers The servers to process
+     * @param task The work for a single server
+     * @return The number of servers handed to the pool
+     */
+    public int runCycle(String job, Collection<GameServer> servers, ServerTask task) {
+        Cycle cycle = new Cycle(job);
+        for (GameServer server : servers) {
+            String key = job + "|" + server.getGuildId() + ":" + server.getName();
+            if (!inFlight.add(key)) {
+                cycle.busy++;
+                continue;
+            }
+            cycle.pending.incrementAndGet();
+            cycle.submitted++;
+            try {
+                pool.execute(() -> {
+                    try {
+                        cycle.items.addAndGet(task.run(server));
+                    } catch (Exception e) {
+                        cycle.failed.incrementAndGet();
+                        logger.error("Error in {} for server {}: {}", job, server.getName(), e.getMessage(), e);
+                    } finally {
+                        inFlight.remove(key);
+                        cycle.taskDone();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The pool is shutting down
+                inFlight.remove(key);
+                cycle.submitted--;
+                cycle.pending.decrementAndGet();
+                logger.warn("Could not schedule {} for server {}: {}", job, server.getName(), e.getMessage());
+            }
+        }
+
+        if (cycle.busy > 0) {
+            logger.warn("{}: skipped {} servers still busy from the previous cycle", job, cycle.busy);
+        }
+        // Release the hold taken in the constructor, logging the summary now if nothing was submitted
+        cycle.taskDone();
+        return cycle.submitted;
+    }
+
+    /**
+     * Stop accepting work and wait for running tasks to finish
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Work done for a single server
+     */
+    @FunctionalInterface
+    public interface ServerTask {
+
+        /**
+         * @param server The server to process
+         * @return The number of items (lines, kills, events) processed
+         */
+        int run(GameServer server) throws Exception;
+    }
+
+    /**
+     * Progress of one cycle of a job
+     */
+    private static final class Cycle {
+        private final String job;
+        private final long started = System.nanoTime();
+        // Starts at one so the summary cannot be logged before every server has been submitted
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong items = new AtomicLong();
+        // Only written by the submitting thread
+        private int submitted;
+        private int busy;
+
+        Cycle(String job) {
+            this.job = job;
+        }
+
+        void taskDone() {
+            if (pending.decrementAndGet() == 0) {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                logger.info("{} cycle completed in {} ms: {} servers run, {} failed, {} skipped as busy, {} items; events: {}",
+                        job, elapsed, submitted, failed.get(), busy, items.get(),
+                        EventDispatcher.getInstance().describeQueues());
+            }
+        }
+    }
+}
@@ -1,28 +1,53 @@
 package com.deadside.bot.schedulers;
 
 import com.deadside.bot.db.models.GameServer;
-import com.deadside.bot.db.models.GuildConfig;
 import com.deadside.bot.db.repositories.GameServerRepository;
-import com.deadside.bot.db.repositories.GuildConfigRepository;
+import com.deadside.bot.events.EventDispatcher;
+import com.deadside.bot.events.LogSource;
 import com.deadside.bot.parsers.KillfeedParser;
+import com.deadside.bot.premium.PremiumManager;
+import com.deadside.bot.sftp.ServerCircuitBreaker;
+import com.deadside.bot.sftp.SftpManager;
 import net.dv8tion.jda.api.JDA;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Scheduler for processing killfeed data
  */
 public class KillfeedScheduler {
     private static final Logger logger = LoggerFactory.getLogger(KillfeedScheduler.class);
+    
+    // How often the set of followed servers is reloaded from the database
+    private static final long FOLLOW_REFRESH_INTERVAL_MS = 60000;
+    // How often a followed server's files are listed to look for a newer killfeed file
+    private static final long FOLLOW_RELIST_INTERVAL_MS = 30000;
+    
     private final GameServerRepository serverRepository;
-    private final GuildConfigRepository guildConfigRepository;
+    private final PremiumManager premiumManager;
+    private final ServerCircuitBreaker circuitBreaker = ServerCircuitBreaker.getInstance();
+    private final SftpManager sftpManager = new SftpManager();
+    private final IngestionPool ingestionPool = IngestionPool.getInstance();
     private KillfeedParser killfeedParser;
     
+    // Servers in follow mode, keyed by guild and server name
+    private volatile Map<String, GameServer> followedServers = Collections.emptyMap();
+    private long lastFollowRefresh = 0;
+    private final Map<String, Long> lastRelists = new ConcurrentHashMap<>();
+    
+    // Keeps the regular schedule and follow mode from processing a server at the same time
+    private final Map<String, Object> serverLocks = new ConcurrentHashMap<>();
+    
     public KillfeedScheduler() {
         this.serverRepository = new GameServerRepository();
-        this.guildConfigRepository = new GuildConfigRepository();
+        this.premiumManager = new PremiumManager();
     }
     
     /**
@@ -34,7 +59,7 @@ public class KillfeedScheduler {
     }
     
     /**
-     * Process killfeed data for all servers
+     * Process killfeed data for all servers, in parallel on the ingestion pool
      */
     public void processAllServers() {
         if (killfeedParser == null) {
@@ -43,28 +68,140 @@ public class KillfeedScheduler {
         }
         
         try {
-            logger.info("Starting scheduled killfeed processing");
+            List<GameServer> servers = new ArrayList<>();
+            for (GameServer server : serverRepository.findAll()) {
+                // Local servers are processed by the local log watcher as soon as their files change,
+                // and followed servers are polled separately
+                if (!server.isLocal() && !followedServers.containsKey(serverKey(server))) {
+                    servers.add(server);
+                }
+            }
             
-            List<GameServer> servers = serverRepository.findAll();
-            int totalProcessed = 0;
+            ingestionPool.runCycle("Killfeed processing", servers, server -> {
+                // Skip unreachable servers until their backoff has passed
+                if (!isReachable(server)) {
+                    return 0;
+                }
+                return processServer(server);
+            });
+        } catch (Exception e) {
+            logger.error("Error in scheduled killfeed processing", e);
+        }
+    }
+    
+    /**
+     * Process killfeed data for a single server and save its progress
+     * @param server The game server to process
+     * @return Number of new kills processed
+     */
+    public int processServer(GameServer server) {
+        if (killfeedParser == null) {
+            logger.error("KillfeedScheduler not initialized with JDA instance");
+            return 0;
+        }
+        
+        // Process killfeed for this server
+        int processed;
+        synchronized (lockFor(server)) {
+            processed = killfeedParser.processServer(server);
+        }
+        
+        // Save the updated progress, leaving settings changed meanwhile alone
+        if (processed > 0) {
+            saveProgress(server);
+        }
+        return processed;
+    }
+    
+    /**
+     * Save a server's killfeed progress once the kills read up to it have been delivered
+     * The progress is taken now, since the server reads on before the save runs
+     */
+    private void saveProgress(GameServer server) {
+        String file = server.getLastProcessedKillfeedFile();
+        long line = server.getLastProcessedKillfeedLine();
+        long timestamp = server.getLastProcessedTimestamp();
+        EventDispatcher.getInstance().afterDelivered(server, LogSource.KILLFEED,
+                () -> serverRepository.saveKillfeedProgress(server, file, line, timestamp));
+    }
+    
+    /**
+     * Poll every followed server for kills appended since the previous poll
+     * Follow mode is opt-in per server and limited to premium guilds
+     */
+    public void followServers() {
+        if (killfeedParser == null) {
+            logger.error("KillfeedScheduler not initialized with JDA instance");
+            return;
+        }
+        
+        try {
+            long now = System.currentTimeMillis();
+            if (now - lastFollowRefresh >= FOLLOW_REFRESH_INTERVAL_MS) {
+                refreshFollowedServers();
+                lastFollowRefresh = now;
+            }
             
-            for (GameServer server : servers) {
-                // Check if this guild has premium (if not, killfeed is still allowed)
-                GuildConfig guildConfig = guildConfigRepository.findByGuildId(server.getGuildId());
+            for (GameServer server : followedServers.values()) {
+                if (!isReachable(server)) {
+                    continue;
+                }
                 
-                // Process killfeed for this server
-                int processed = killfeedParser.processServer(server);
-                totalProcessed += processed;
+                String key = serverKey(server);
+                boolean relist = now - lastRelists.getOrDefault(key, 0L) >= FOLLOW_RELIST_INTERVAL_MS;
+                if (relist) {
+                    lastRelists.put(key, now);
+                }
+                
+                String previousFile = server.getLastProcessedKillfeedFile();
+                long previousLine = server.getLastProcessedKillfeedLine();
+                synchronized (lockFor(server)) {
+                    killfeedParser.followServer(server, relist);
+                }
                 
-                // Save server state with updated progress
-                if (processed > 0) {
-                    serverRepository.save(server);
+                // Save progress whenever it moves, so reloading the server keeps the tail offset valid
+                // The followed copy can be up to a minute old, so only the progress fields are written
+                if (server.getLastProcessedKillfeedLine() != previousLine
+                        || !server.getLastProcessedKillfeedFile().equals(previousFile)) {
+                    saveProgress(server);
                 }
             }
-            
-            logger.info("Completed scheduled killfeed processing, total kills processed: {}", totalProcessed);
         } catch (Exception e) {
-            logger.error("Error in scheduled killfeed processing", e);
+            logger.error("Error in killfeed follow mode", e);
         }
     }
+    
+    /**
+     * Reload the servers that are in follow mode
+     */
+    private void refreshFollowedServers() {
+        Map<String, GameServer> followed = new HashMap<>();
+        for (GameServer server : serverRepository.findAll()) {
+            if (server.isKillfeedFollow() && !server.isLocal() && server.getKillfeedChannelId() != 0
+                    && premiumManager.hasPremium(server.getGuildId())) {
+                followed.put(serverKey(server), server);
+            }
+        }
+        
+        if (followed.size() != followedServers.size()) {
+            logger.info("Following the killfeed of {} servers", followed.size());
+        }
+        lastRelists.keySet().retainAll(followed.keySet());
+        followedServers = followed;
+    }
+    
+    /**
+     * Check the server's circuit breaker, probing the server if its backoff has passed
+     */
+    private boolean isReachable(GameServer server) {
+        return circuitBreaker.allowRequest(server, () -> sftpManager.testConnection(server));
+    }
+    
+    private Object lockFor(GameServer server) {
+        return serverLocks.computeIfAbsent(serverKey(server), k -> new Object());
+    }
+    
+    private static String serverKey(GameServer server) {
+        return server.getGuildId() + ":" + server.getName();
+    }
 }
@@ -0,0 +1,139 @@
+package com.deadside.bot.sftp;
+
+import com.jcraft.jsch.SftpATTRS;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of remote directory listings used to walk the deathlog tree incrementally
+ * A directory's listing is reused while its mtime is unchanged and its newest file still has the cached
+ * size and mtime, and every tree is fully re-listed once per resync interval as a safety net
+ */
+public class DirectoryTreeCache {
+    private final long resyncInterval;
+    private final Map<String, Tree> trees = new ConcurrentHashMap<>();
+
+    /**
+     * @param resyncInterval How often each tree is fully re-listed, in milliseconds
+     */
+    public DirectoryTreeCache(long resyncInterval) {
+        this.resyncInterval = resyncInterval;
+    }
+
+    /**
+     * Start a walk of the tree rooted at the given key
+     * Drops every cached listing of the tree if a full resync is due
+     * @param rootKey Key identifying the root directory
+     * @return True if this walk is a full resync
+     */
+    public boolean beginWalk(String rootKey) {
+        Tree tree = trees.computeIfAbsent(rootKey, k -> new Tree());
+        long now = System.currentTimeMillis();
+        if (now - tree.lastFullSync < resyncInterval) {
+            return false;
+        }
+        tree.listings.clear();
+        tree.lastFullSync = now;
+        return true;
+    }
+
+    /**
+     * Get the cached listing of a directory if it may be reused
+     * Only leaf directories whose mtime is unchanged and whose files have settled are candidates:
+     * appending to a file does not touch the directory mtime, so directories with recently written
+     * files are always listed again, as are directories with subdirectories (their children's mtimes
+     * only come from listing them). A settled file can still start growing again, so callers must also
+     * check that the listing's newest file is unchanged with {@link Listing#isCurrent} before using it
+     * @param rootKey Key identifying the root directory
+     * @param directory Path of the directory
+     * @param mtime Current mtime of the directory, as seen in its parent's listing
+     * @return The cached listing, or null if the directory must be listed again
+     */
+    public Listing getReusable(String rootKey, String directory, int mtime) {
+        Tree tree = trees.get(rootKey);
+        Listing listing = tree == null ? null : tree.listings.get(directory);
+        if (listing == null || listing.mtime != mtime || !listing.subdirectories.isEmpty()) {
+            return null;
+        }
+
+        long settledBefore = (System.currentTimeMillis() - resyncInterval) / 1000;
+        return listing.newestFileMtime < settledBefore ? listing : null;
+    }
+
+    /**
+     * Store a fresh listing of a directory
+     */
+    public void put(String rootKey, String directory, Listing listing) {
+        trees.computeIfAbsent(rootKey, k -> new Tree()).listings.put(directory, listing);
+    }
+
+    /**
+     * Cached listings of one directory tree
+     */
+    private static final class Tree {
+        private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+        private volatile long lastFullSync = 0;
+    }
+
+    /**
+     * The relevant contents of one directory
+     */
+    public static final class Listing {
+        private final int mtime;
+        private final Map<String, SftpATTRS> files;
+        private final Map<String, Integer> subdirectories;
+        private final String newestFile;
+        private final long newestFileMtime;
+
+        /**
+         * @param mtime Mtime of the directory itself
+         * @param files Matching files in the directory, by name
+         * @param subdirectories Subdirectories of the directory with their mtimes, by name
+         */
+        public Listing(int mtime, Map<String, SftpATTRS> files, Map<String, Integer> subdirectories) {
+            this.mtime = mtime;
+            this.files = files;
+            this.subdirectories = subdirectories;
+
+            String newestName = null;
+            long newest = 0;
+            for (Map.Entry<String, SftpATTRS> file : files.entrySet()) {
+                long fileMtime = file.getValue().getMTime() & 0xFFFFFFFFL;
+                if (newestName == null || fileMtime > newest) {
+                    newestName = file.getKey();
+                    newest = fileMtime;
+                }
+            }
+            this.newestFile = newestName;
+            this.newestFileMtime = newest;
+        }
+
+        /**
+         * @return Name of the most recently modified file, the one the game server appends to, or null if there are none
+         */
+        public String getNewestFile() {
+            return newestFile;
+        }
+
+        /**
+         * Check whether the newest file still has the size and mtime it had when the directory was listed
+         * @param attrs Current attributes of the newest file, or null if it no longer exists
+         */
+        public boolean isCurrent(SftpATTRS attrs) {
+            if (newestFile == null) {
+                return true;
+            }
+            SftpATTRS cached = files.get(newestFile);
+            return attrs != null && attrs.getSize() == cached.getSize() && attrs.getMTime() == cached.getMTime();
+        }
+
+        public Map<String, SftpATTRS> getFiles() {
+            return files;
+        }
+
+        public Map<String, Integer> getSubdirectories() {
+            return subdirectories;
+        }
+    }
+}
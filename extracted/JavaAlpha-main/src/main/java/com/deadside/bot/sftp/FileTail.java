@@ -0,0 +1,274 @@
+package com.deadside.bot.sftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read position within a remote file that is being tailed
+ * Tracks the byte offset of the next unread byte and carries any partial trailing line over to the next read.
+ * The first bytes of the file and, where the file system has one, the file's identity are kept as a
+ * fingerprint, so a rotated file is recognized even if the new file has already grown past the old offset.
+ * The last bytes read are kept too, so a remote reader can download them again with the new bytes and
+ * check that the file is unchanged up to the offset without a separate read of its head.
+ */
+public class FileTail {
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Number of leading bytes kept to recognize the file
+     */
+    public static final int HEAD_SIZE = 1024;
+
+    /**
+     * Number of trailing bytes before the offset kept to check that the file was not replaced
+     */
+    public static final int RECENT_SIZE = 64;
+
+    private long offset = 0;
+    private long lineCount = 0;
+    private byte[] partial = new byte[256];
+    private int partialLength = 0;
+    private byte[] head = new byte[HEAD_SIZE];
+    private int headLength = 0;
+    private byte[] recent = new byte[RECENT_SIZE];
+    private int recentLength = 0;
+    private Object identity;
+
+    /**
+     * @return Byte offset of the next unread byte in the remote file
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Number of complete lines consumed since the start of the file
+     */
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return Number of leading bytes of the file seen so far, at most {@link #HEAD_SIZE}
+     */
+    public synchronized int getHeadLength() {
+        return headLength;
+    }
+
+    /**
+     * Check whether a file starts with the same bytes as the tailed file
+     * @param bytes Leading bytes of the file to check
+     * @param length Number of valid bytes, at least {@link #getHeadLength()} for a match
+     * @return True if the leading bytes seen so far are identical
+     */
+    public synchronized boolean matchesHead(byte[] bytes, int length) {
+        return length >= headLength && Arrays.equals(head, 0, headLength, bytes, 0, headLength);
+    }
+
+    /**
+     * @return Number of bytes just before the offset that were seen by this tail, at most {@link #RECENT_SIZE}
+     */
+    public synchronized int getRecentLength() {
+        return recentLength;
+    }
+
+    /**
+     * Check whether the bytes just before the offset are the ones this tail read there
+     * @param bytes The file's {@link #getRecentLength()} bytes ending at the offset
+     * @return True if they are identical
+     */
+    public synchronized boolean matchesRecent(byte[] bytes) {
+        return bytes.length == recentLength && Arrays.equals(recent, 0, recentLength, bytes, 0, recentLength);
+    }
+
+    /**
+     * @return The file system identity of the tailed file (such as its inode), or null if unknown
+     */
+    public synchronized Object getIdentity() {
+        return identity;
+    }
+
+    public synchronized void setIdentity(Object identity) {
+        this.identity = identity;
+    }
+
+    /**
+     * Get the position after the last complete line, for saving across restarts
+     * A trailing partial line is not included, so it is read again after a restore
+     */
+    public synchronized Position getPosition() {
+        long committed = offset - partialLength;
+        return new Position(committed, lineCount, Arrays.copyOf(head, (int) Math.min(headLength, committed)));
+    }
+
+    /**
+     * Continue from a saved position
+     * The saved leading bytes are compared with the file on the next read, so a file that was replaced
+     * in the meantime is still recognized as rotated
+     */
+    public synchronized void restore(Position position) {
+        offset = position.offset();
+        lineCount = position.lineCount();
+        partialLength = 0;
+        headLength = Math.min(position.head().length, HEAD_SIZE);
+        System.arraycopy(position.head(), 0, head, 0, headLength);
+        recentLength = 0;
+        identity = null;
+    }
+
+    /**
+     * Take the trailing partial line as a final line
+     * Used once a rotated file has been drained, since nothing more will be appended to it
+     * @return The line, or null if the file ended with a line terminator
+     */
+    public synchronized String drainPartial() {
+        if (partialLength == 0) {
+            return null;
+        }
+        String line = decode(partial, partialLength);
+        partialLength = 0;
+        lineCount++;
+        return line;
+    }
+
+    /**
+     * Move on to the file that replaced the tailed one
+     * The read position and fingerprint start over, while the line count keeps running so callers
+     * that number lines across rotations stay in step
+     */
+    public synchronized void rotate() {
+        offset = 0;
+        partialLength = 0;
+        headLength = 0;
+        recentLength = 0;
+        identity = null;
+    }
+
+    /**
+     * Forget the read position so the file is read again from the start
+     */
+    public synchronized void reset() {
+        offset = 0;
+        lineCount = 0;
+        partialLength = 0;
+        headLength = 0;
+        recentLength = 0;
+        identity = null;
+    }
+
+    /**
+     * Consume bytes appended to the file since the last read
+     * The tail is only advanced once the whole stream has been read, so a failed read can simply be retried
+     * @param in Stream positioned at {@link #getOffset()}
+     * @param firstLine Index of the first line to return, earlier lines are consumed but dropped
+     * @return The complete lines read, without line terminators
+     */
+    public synchronized List<String> consume(InputStream in, long firstLine) throws IOException {
+        List<String> lines = new ArrayList<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] pending = Arrays.copyOf(partial, Math.max(partial.length, partialLength));
+        int pendingLength = partialLength;
+        long newOffset = offset;
+        long newLineCount = lineCount;
+        byte[] newHead = headLength < HEAD_SIZE ? head.clone() : head;
+        int newHeadLength = headLength;
+        byte[] newRecent = recent.clone();
+        int newRecentLength = recentLength;
+
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            // Keep the leading bytes as the file's fingerprint
+            if (newHeadLength < HEAD_SIZE && newOffset == newHeadLength) {
+                int length = Math.min(read, HEAD_SIZE - newHeadLength);
+                System.arraycopy(buffer, 0, newHead, newHeadLength, length);
+                newHeadLength += length;
+            }
+
+            // Keep the last bytes read, for checking the file up to the offset on the next read
+            if (read >= RECENT_SIZE) {
+                System.arraycopy(buffer, read - RECENT_SIZE, newRecent, 0, RECENT_SIZE);
+                newRecentLength = RECENT_SIZE;
+            } else {
+                int kept = Math.min(newRecentLength, RECENT_SIZE - read);
+                System.arraycopy(newRecent, newRecentLength - kept, newRecent, 0, kept);
+                System.arraycopy(buffer, 0, newRecent, kept, read);
+                newRecentLength = kept + read;
+            }
+
+            newOffset += read;
+            int start = 0;
+
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != '\n') {
+                    continue;
+                }
+
+                pending = append(pending, pendingLength, buffer, start, i - start);
+                pendingLength += i - start;
+                if (newLineCount >= firstLine) {
+                    lines.add(decode(pending, pendingLength));
+                }
+                pendingLength = 0;
+                newLineCount++;
+                start = i + 1;
+            }
+
+            pending = append(pending, pendingLength, buffer, start, read - start);
+            pendingLength += read - start;
+        }
+
+        offset = newOffset;
+        lineCount = newLineCount;
+        partial = pending;
+        partialLength = pendingLength;
+        head = newHead;
+        headLength = newHeadLength;
+        recent = newRecent;
+        recentLength = newRecentLength;
+        return lines;
+    }
+
+    private static byte[] append(byte[] target, int targetLength, byte[] source, int start, int length) {
+        if (targetLength + length > target.length) {
+            target = Arrays.copyOf(target, Math.max(target.length * 2, targetLength + length));
+        }
+        System.arraycopy(source, start, target, targetLength, length);
+        return target;
+    }
+
+    private static String decode(byte[] bytes, int length) {
+        // Strip Windows line endings
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read position within a file: the offset just past the last complete line, the number of lines
+     * before it and the file's leading bytes as its fingerprint
+     */
+    public record Position(long offset, long lineCount, byte[] head) {
+
+        /**
+         * Position after the last complete line of a file that was read as a whole
+         */
+        public static Position of(byte[] content) {
+            int end = content.length;
+            while (end > 0 && content[end - 1] != '\n') {
+                end--;
+            }
+            long lines = 0;
+            for (int i = 0; i < end; i++) {
+                if (content[i] == '\n') {
+                    lines++;
+                }
+            }
+            return new Position(end, lines, Arrays.copyOf(content, Math.min(end, HEAD_SIZE)));
+        }
+    }
+}
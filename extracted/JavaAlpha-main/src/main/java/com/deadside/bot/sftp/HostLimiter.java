@@ -0,0 +1,208 @@
+package com.deadside.bot.sftp;
+
+import com.deadside.bot.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on SSH traffic to a single host, shared by every account and game server on that host
+ * Hosting providers ban addresses that open too many concurrent connections, so open sessions and
+ * channels are capped per host name regardless of the port or username, and downloads can be held
+ * to a bytes-per-second budget. Waiters are served in arrival order.
+ */
+public class HostLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(HostLimiter.class);
+    private static HostLimiter instance;
+
+    private final Map<String, Limits> hosts = new ConcurrentHashMap<>();
+    private final int maxSessions;
+    private final int maxChannels;
+    private final long bytesPerSecond;
+
+    private HostLimiter() {
+        Config config = Config.getInstance();
+        this.maxSessions = config.getSftpHostMaxSessions();
+        this.maxChannels = config.getSftpHostMaxChannels();
+        this.bytesPerSecond = config.getSftpHostBandwidth();
+    }
+
+    public static synchronized HostLimiter getInstance() {
+        if (instance == null) {
+            instance = new HostLimiter();
+        }
+        return instance;
+    }
+
+    /**
+     * Wait for a free session slot on a host
+     * A session also holds one channel slot for its primary SFTP channel
+     * @param host The host name
+     * @param timeout How long to wait, in milliseconds
+     * @return True if the slot was acquired
+     */
+    public boolean acquireSession(String host, long timeout) throws InterruptedException {
+        Limits limits = limits(host);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        if (!limits.sessions.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        long remaining = Math.max(0, deadline - System.nanoTime());
+        if (!limits.channels.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+            limits.sessions.release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a session slot is free right now, without waiting
+     * Still honors the queue, so a caller never jumps ahead of earlier waiters
+     */
+    public boolean tryAcquireSession(String host) {
+        try {
+            return acquireSession(host, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Give back the slots held by a closed session
+     */
+    public void releaseSession(String host) {
+        Limits limits = limits(host);
+        limits.channels.release();
+        limits.sessions.release();
+    }
+
+    /**
+     * Take a slot for an additional channel if one is free right now
+     * Extra channels only speed up parallel downloads, so callers do without rather than wait
+     * @param host The host name
+     * @return True if the slot was acquired
+     */
+    public boolean tryAcquireChannel(String host) {
+        return limits(host).channels.tryAcquire();
+    }
+
+    /**
+     * Give back the slot held by a closed additional channel
+     */
+    public void releaseChannel(String host) {
+        limits(host).channels.release();
+    }
+
+    /**
+     * Wrap a download stream so it stays within the host's bandwidth budget
+     * @param host The host name
+     * @param in The raw download stream
+     * @return The stream itself if no budget is configured
+     */
+    public InputStream throttle(String host, InputStream in) {
+        Limits limits = limits(host);
+        return limits.bandwidth == null ? in : new ThrottledInputStream(in, limits.bandwidth);
+    }
+
+    private Limits limits(String host) {
+        return hosts.computeIfAbsent(host, h -> {
+            logger.debug("Limiting SFTP traffic to {}: {} sessions, {} channels, {} bytes/s",
+                    h, maxSessions, maxChannels, bytesPerSecond > 0 ? bytesPerSecond : "unlimited");
+            return new Limits();
+        });
+    }
+
+    /**
+     * Slots and bandwidth budget of one host
+     */
+    private class Limits {
+        private final Semaphore sessions = new Semaphore(maxSessions, true);
+        private final Semaphore channels = new Semaphore(Math.max(maxChannels, maxSessions), true);
+        private final TokenBucket bandwidth = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+    }
+
+    /**
+     * Token bucket holding at most one second of traffic
+     * Each read reserves its bytes up front and sleeps off any debt, so concurrent readers
+     * are paced in the order they reserved
+     */
+    private static final class TokenBucket {
+        private final long rate;
+        private double available;
+        private long lastRefill;
+
+        TokenBucket(long rate) {
+            this.rate = rate;
+            this.available = rate;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * Reserve bytes and return how long the caller must wait before using them
+         * @return The wait in nanoseconds
+         */
+        synchronized long reserve(int bytes) {
+            long now = System.nanoTime();
+            available = Math.min(rate, available + (now - lastRefill) * rate / 1e9);
+            lastRefill = now;
+
+            available -= bytes;
+            return available >= 0 ? 0 : (long) (-available * 1e9 / rate);
+        }
+    }
+
+    /**
+     * Input stream that paces reads through a token bucket
+     */
+    private static final class ThrottledInputStream extends FilterInputStream {
+        // Small reads keep pacing smooth when the budget is low
+        private static final int MAX_CHUNK = 16 * 1024;
+
+        private final TokenBucket bucket;
+
+        ThrottledInputStream(InputStream in, TokenBucket bucket) {
+            super(in);
+            this.bucket = bucket;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                pace(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, Math.min(len, MAX_CHUNK));
+            if (read > 0) {
+                pace(read);
+            }
+            return read;
+        }
+
+        private void pace(int bytes) throws IOException {
+            long wait = bucket.reserve(bytes);
+            if (wait <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling SFTP download");
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.deadside.bot.sftp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads UTF-8 lines from a stream through reusable buffers
+ * Memory use is bounded by the longest line rather than the size of the stream.
+ * Pure ASCII lines, which are nearly all of a Deadside log, skip the charset decoder entirely.
+ */
+public class LineReader implements Closeable {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] buffer;
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    public LineReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public LineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Read the next line
+     * @return The line without its terminator, or null at the end of the stream
+     */
+    public String readLine() throws IOException {
+        int scan = position;
+        boolean ascii = true;
+
+        while (true) {
+            for (; scan < limit; scan++) {
+                byte b = buffer[scan];
+                if (b == '\n') {
+                    String line = decode(position, scan, ascii);
+                    position = scan + 1;
+                    return line;
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+            }
+
+            if (eof) {
+                if (position == limit) {
+                    return null;
+                }
+                // Last line without a terminator
+                String line = decode(position, limit, ascii);
+                position = limit;
+                return line;
+            }
+
+            scan -= fill();
+        }
+    }
+
+    /**
+     * Move unread bytes to the front of the buffer and read more
+     * @return How far the unread bytes were moved back
+     */
+    private int fill() throws IOException {
+        int shift = position;
+        if (shift > 0) {
+            System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+            limit -= shift;
+            position = 0;
+        }
+
+        // A single line fills the whole buffer
+        if (limit == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+        return shift;
+    }
+
+    private String decode(int start, int end, boolean ascii) {
+        // Strip Windows line endings
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        int length = end - start;
+
+        if (ascii) {
+            // Every byte maps to the same char, which is a plain copy for compact strings
+            return new String(buffer, start, length, StandardCharsets.ISO_8859_1);
+        }
+
+        // UTF-8 never produces more chars than bytes
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(buffer, start, length), chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return chars.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
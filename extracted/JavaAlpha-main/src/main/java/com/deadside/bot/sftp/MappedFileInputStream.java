@@ -0,0 +1,70 @@
+package com.deadside.bot.sftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a byte range of a local file through memory-mapped windows
+ * The range is mapped one window at a time, so ranges larger than 2 GB are supported
+ * and the file content never has to be copied onto the heap as a whole
+ */
+public class MappedFileInputStream extends InputStream {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long end;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    /**
+     * @param channel An open channel on the file, owned and closed by the caller
+     * @param start Offset of the first byte to read
+     * @param end Offset just past the last byte to read
+     */
+    public MappedFileInputStream(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.end = end;
+        this.windowStart = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureWindow()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureWindow()) {
+            return -1;
+        }
+        int count = Math.min(len, window.remaining());
+        window.get(b, off, count);
+        return count;
+    }
+
+    /**
+     * Map the next window once the current one is used up
+     * @return False at the end of the range
+     */
+    private boolean ensureWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (window != null) {
+            windowStart += window.capacity();
+        }
+        if (windowStart >= end) {
+            return false;
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, end - windowStart));
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.deadside.bot.sftp;
+
+import com.deadside.bot.db.models.GameServer;
+import com.jcraft.jsch.SftpATTRS;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-server cache of remote file metadata (size and modification time)
+ * Each consumer keeps its own cache and records a file once it has processed it,
+ * so that later ticks can skip the download while the file is unchanged
+ */
+public class RemoteFileCache {
+    private final Map<String, Map<String, FileMetadata>> servers = new ConcurrentHashMap<>();
+
+    /**
+     * Check whether a file still has the size and mtime recorded when it was last processed
+     * @param server The server config
+     * @param path Path of the file
+     * @param attrs Current remote attributes of the file
+     * @return True if the file was processed before and has not changed since
+     */
+    public boolean isUnchanged(GameServer server, String path, SftpATTRS attrs) {
+        return attrs != null && isUnchanged(server, path, attrs.getSize(), attrs.getMTime());
+    }
+
+    /**
+     * Check whether a file still has the size and mtime recorded when it was last processed
+     * @param server The server config
+     * @param path Path of the file
+     * @param size Current size of the file
+     * @param mtime Current modification time of the file, in any unit used consistently for the path
+     * @return True if the file was processed before and has not changed since
+     */
+    public boolean isUnchanged(GameServer server, String path, long size, long mtime) {
+        FileMetadata cached = files(server).get(path);
+        return cached != null && cached.size == size && cached.mtime == mtime;
+    }
+
+    /**
+     * Record the attributes of a file that has just been processed
+     */
+    public void update(GameServer server, String path, SftpATTRS attrs) {
+        if (attrs != null) {
+            update(server, path, attrs.getSize(), attrs.getMTime());
+        }
+    }
+
+    /**
+     * Record the size and mtime of a file that has just been processed
+     */
+    public void update(GameServer server, String path, long size, long mtime) {
+        files(server).put(path, new FileMetadata(size, mtime));
+    }
+
+    /**
+     * Forget a file so it is processed again on the next tick
+     */
+    public void invalidate(GameServer server, String path) {
+        files(server).remove(path);
+    }
+
+    /**
+     * Drop cached entries for files that no longer exist on the server
+     * @param server The server config
+     * @param existingPaths Paths currently present on the server
+     */
+    public void retainOnly(GameServer server, Collection<String> existingPaths) {
+        files(server).keySet().retainAll(existingPaths);
+    }
+
+    private Map<String, FileMetadata> files(GameServer server) {
+        return servers.computeIfAbsent(server.getGuildId() + ":" + server.getName(), k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Size and modification time of a file as last processed
+     */
+    private static final class FileMetadata {
+        private final long size;
+        private final long mtime;
+
+        FileMetadata(long size, long mtime) {
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+}
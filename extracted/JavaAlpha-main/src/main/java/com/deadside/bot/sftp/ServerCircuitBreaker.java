@@ -0,0 +1,189 @@
+package com.deadside.bot.sftp;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.GameServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Per-server circuit breaker for unreachable game servers
+ * After repeated connection failures a server is skipped for a backoff window that doubles
+ * with every failed probe, so one dead host no longer costs a full connect timeout on every tick.
+ * Once the window has passed, a single cheap probe decides whether the server is back.
+ */
+public class ServerCircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(ServerCircuitBreaker.class);
+    private static ServerCircuitBreaker instance;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+    private final int failureThreshold;
+    private final long initialBackoff;
+    private final long maxBackoff;
+
+    private ServerCircuitBreaker() {
+        Config config = Config.getInstance();
+        this.failureThreshold = config.getBreakerFailureThreshold();
+        this.initialBackoff = config.getBreakerInitialBackoff();
+        this.maxBackoff = config.getBreakerMaxBackoff();
+    }
+
+    public static synchronized ServerCircuitBreaker getInstance() {
+        if (instance == null) {
+            instance = new ServerCircuitBreaker();
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether a server should be contacted on this tick
+     * If the server's backoff window has passed, the probe is run once to decide
+     * @param server The server config
+     * @param probe Cheap reachability check, such as a connection test
+     * @return True if the server may be processed
+     */
+    public boolean allowRequest(GameServer server, BooleanSupplier probe) {
+        Breaker breaker = breaker(server);
+        synchronized (breaker) {
+            if (breaker.state == State.CLOSED) {
+                return true;
+            }
+            if (breaker.state == State.HALF_OPEN || System.currentTimeMillis() < breaker.retryAt) {
+                return false;
+            }
+            breaker.state = State.HALF_OPEN;
+        }
+
+        logger.info("Probing server {} after {} consecutive failures", server.getName(), breaker.failures);
+        boolean reachable;
+        try {
+            reachable = probe.getAsBoolean();
+        } catch (Exception e) {
+            reachable = false;
+        }
+
+        synchronized (breaker) {
+            if (reachable) {
+                close(server, breaker);
+            } else {
+                breaker.failures++;
+                breaker.backoff = Math.min(maxBackoff, breaker.backoff * 2);
+                open(server, breaker);
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Record that a server was reached
+     */
+    public void recordSuccess(GameServer server) {
+        Breaker breaker = breakers.get(serverKey(server));
+        if (breaker == null) {
+            return;
+        }
+        synchronized (breaker) {
+            // A probe in progress settles the state itself
+            if (breaker.state != State.HALF_OPEN && (breaker.failures > 0 || breaker.state == State.OPEN)) {
+                close(server, breaker);
+            }
+        }
+    }
+
+    /**
+     * Record that a server could not be reached
+     */
+    public void recordFailure(GameServer server, Exception e) {
+        Breaker breaker = breaker(server);
+        synchronized (breaker) {
+            if (breaker.state != State.CLOSED) {
+                return;
+            }
+            breaker.failures++;
+            breaker.lastError = e.getMessage();
+            if (breaker.failures >= failureThreshold) {
+                breaker.backoff = initialBackoff;
+                open(server, breaker);
+            }
+        }
+    }
+
+    /**
+     * Get the breaker state of a server
+     */
+    public State getState(GameServer server) {
+        Breaker breaker = breakers.get(serverKey(server));
+        return breaker == null ? State.CLOSED : breaker.state;
+    }
+
+    /**
+     * Get the number of consecutive failures of a server
+     */
+    public int getFailures(GameServer server) {
+        Breaker breaker = breakers.get(serverKey(server));
+        return breaker == null ? 0 : breaker.failures;
+    }
+
+    /**
+     * Get when an open breaker will next probe the server
+     * @return Epoch milliseconds, or 0 if the breaker is not open
+     */
+    public long getRetryAt(GameServer server) {
+        Breaker breaker = breakers.get(serverKey(server));
+        return breaker == null || breaker.state != State.OPEN ? 0 : breaker.retryAt;
+    }
+
+    /**
+     * Get the message of the last connection failure
+     * @return The message, or null if the server has not failed since it was last reached
+     */
+    public String getLastError(GameServer server) {
+        Breaker breaker = breakers.get(serverKey(server));
+        return breaker == null ? null : breaker.lastError;
+    }
+
+    private void open(GameServer server, Breaker breaker) {
+        breaker.state = State.OPEN;
+        breaker.retryAt = System.currentTimeMillis() + breaker.backoff;
+        logger.warn("Server {} is unreachable after {} failures, skipping it for {} seconds",
+                server.getName(), breaker.failures, breaker.backoff / 1000);
+    }
+
+    private void close(GameServer server, Breaker breaker) {
+        if (breaker.state != State.CLOSED) {
+            logger.info("Server {} is reachable again", server.getName());
+        }
+        breaker.state = State.CLOSED;
+        breaker.failures = 0;
+        breaker.backoff = initialBackoff;
+        breaker.lastError = null;
+    }
+
+    private Breaker breaker(GameServer server) {
+        return breakers.computeIfAbsent(serverKey(server), k -> new Breaker());
+    }
+
+    private static String serverKey(GameServer server) {
+        return server.getGuildId() + ":" + server.getName();
+    }
+
+    /**
+     * Breaker state of one server
+     */
+    private final class Breaker {
+        private volatile State state = State.CLOSED;
+        private volatile int failures = 0;
+        private volatile long retryAt = 0;
+        private volatile String lastError;
+        private long backoff = initialBackoff;
+    }
+}
@@ -0,0 +1,20 @@
+package com.deadside.bot.sftp;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Thrown when no SFTP session could be obtained for reasons on the bot's side, such as a timeout
+ * waiting for the session pool or the host's session limit, or a pool that is shutting down
+ * The game server was never contacted, so this is not a failure of the server.
+ */
+public class SessionUnavailableException extends JSchException {
+    private static final long serialVersionUID = 1L;
+
+    public SessionUnavailableException(String message) {
+        super(message);
+    }
+
+    public SessionUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -3,82 +3,146 @@ package com.deadside.bot.sftp;
 import com.deadside.bot.config.Config;
 import com.deadside.bot.db.models.GameServer;
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
-import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * SFTP connection handler
+ * Operations run on sessions borrowed from the shared {@link SftpSessionPool}
  */
 public class SftpConnector {
     private static final Logger logger = LoggerFactory.getLogger(SftpConnector.class);
-    private final int timeout;
+    private final SftpSessionPool sessionPool;
+    private final HostLimiter hostLimiter;
+    private final ServerCircuitBreaker circuitBreaker;
+    private final int parallelChannels;
+    
+    // Runs the per-channel workers of parallel downloads
+    private static final ExecutorService downloadExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "sftp-download");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Read positions of files being tailed, keyed by host, port and path
+    private final Map<String, FileTail> tails = new ConcurrentHashMap<>();
+    
+    // Cached deathlog directory listings, keyed by host, port and base directory
+    private final DirectoryTreeCache directoryCache;
     
     public SftpConnector() {
-        Config config = Config.getInstance();
-        this.timeout = config.getSftpConnectTimeout();
+        this.sessionPool = SftpSessionPool.getInstance();
+        this.hostLimiter = HostLimiter.getInstance();
+        this.circuitBreaker = ServerCircuitBreaker.getInstance();
+        this.parallelChannels = Config.getInstance().getSftpParallelChannels();
+        this.directoryCache = new DirectoryTreeCache(Config.getInstance().getDeathlogResyncInterval());
     }
     
     /**
-     * Connect to an SFTP server
+     * Run an operation on a pooled SFTP channel
+     * If the pooled session turns out to be dead, it is discarded and the operation retried once on a fresh session
      * @param server The server config
-     * @return The SFTP channel and session
-     * @throws JSchException If connection fails
+     * @param operation The operation to run
+     * @return The operation result
      */
-    private SftpConnection connect(GameServer server) throws JSchException {
-        JSch jsch = new JSch();
-        Session session = null;
-        ChannelSftp channel = null;
-        
-        try {
-            session = jsch.getSession(server.getUsername(), server.getHost(), server.getPort());
-            session.setPassword(server.getPassword());
-            
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            session.setConfig(config);
-            session.setTimeout(timeout);
-            
-            session.connect();
-            
-            channel = (ChannelSftp) session.openChannel("sftp");
-            channel.connect();
-            
-            return new SftpConnection(session, channel);
-        } catch (JSchException e) {
-            // Make sure to close session if an error occurs
-            if (channel != null) {
-                channel.disconnect();
+    private <T> T withChannel(GameServer server, SftpOperation<T> operation) throws Exception {
+        return withSession(server, session -> operation.execute(session.getChannel()));
+    }
+    
+    /**
+     * Run an operation on a pooled SFTP session
+     * If the pooled session turns out to be dead, it is discarded and the operation retried once on a fresh session.
+     * The outcome is reported to the {@link ServerCircuitBreaker}.
+     * @param server The server config
+     * @param operation The operation to run
+     * @return The operation result
+     */
+    private <T> T withSession(GameServer server, SessionOperation<T> operation) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            SftpSessionPool.PooledSession session;
+            try {
+                session = sessionPool.borrow(server);
+            } catch (SessionUnavailableException e) {
+                // Contention on the bot's side says nothing about the server, so the breaker is left alone
+                throw e;
+            } catch (JSchException e) {
+                circuitBreaker.recordFailure(server, e);
+                throw e;
             }
-            if (session != null) {
-                session.disconnect();
+            
+            try {
+                T result = operation.execute(session);
+                sessionPool.release(session);
+                circuitBreaker.recordSuccess(server);
+                return result;
+            } catch (Exception e) {
+                if (!isConnectionFailure(session, e)) {
+                    // The server was reached, the operation itself failed
+                    sessionPool.release(session);
+                    circuitBreaker.recordSuccess(server);
+                    throw e;
+                }
+                
+                sessionPool.invalidate(session);
+                if (attempt >= 2) {
+                    circuitBreaker.recordFailure(server, e);
+                    throw e;
+                }
+                logger.info("SFTP session for server {} was lost, reconnecting", server.getName());
             }
-            throw e;
         }
     }
     
+    /**
+     * Check whether an operation failed because the connection itself broke
+     */
+    private boolean isConnectionFailure(SftpSessionPool.PooledSession session, Exception e) {
+        if (!session.isUsable() || e instanceof JSchException) {
+            return true;
+        }
+        if (e instanceof SftpException) {
+            int id = ((SftpException) e).id;
+            return id == ChannelSftp.SSH_FX_NO_CONNECTION || id == ChannelSftp.SSH_FX_CONNECTION_LOST;
+        }
+        return false;
+    }
+    
     /**
      * Test connection to an SFTP server
      * @param server The server config
      * @return True if connection is successful
      */
     public boolean testConnection(GameServer server) {
-        try (SftpConnection connection = connect(server)) {
+        try {
             // Just test the connection, don't try to validate directories yet
             // Directory paths will be auto-constructed and we'll create them if needed
-            return true;
+            return withChannel(server, channel -> {
+                channel.stat(".");
+                return true;
+            });
         } catch (Exception e) {
             logger.error("Failed to connect to SFTP server: {}", server.getName(), e);
             return false;
@@ -87,18 +151,22 @@ public class SftpConnector {
     
     /**
      * Ensures the base directory exists on the SFTP server
-     * @param server The server config
+     * @param channel The SFTP channel
+     * @param directory Directory to check
      * @return True if directory exists or was created
      */
-    private boolean ensureDirectoryExists(SftpConnection connection, String directory) {
+    private boolean ensureDirectoryExists(ChannelSftp channel, String directory) {
         try {
             try {
                 // Check if directory exists
-                connection.getChannel().stat(directory);
+                channel.stat(directory);
                 return true;
-            } catch (Exception e) {
+            } catch (SftpException e) {
+                if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                    throw e;
+                }
                 // Directory doesn't exist, create it
-                connection.getChannel().mkdir(directory);
+                channel.mkdir(directory);
                 return true;
             }
         } catch (Exception e) {
@@ -114,27 +182,30 @@ public class SftpConnector {
      * @return List of file names
      */
     public List<String> listFiles(GameServer server, String directory) throws Exception {
-        try (SftpConnection connection = connect(server)) {
+        return withChannel(server, channel -> {
             List<String> files = new ArrayList<>();
             
             // Try to list the directory, create it if it doesn't exist
             try {
-                Vector<ChannelSftp.LsEntry> entries = connection.getChannel().ls(directory);
+                Vector<ChannelSftp.LsEntry> entries = channel.ls(directory);
                 for (ChannelSftp.LsEntry entry : entries) {
                     String filename = entry.getFilename();
                     if (!filename.equals(".") && !filename.equals("..") && !entry.getAttrs().isDir()) {
                         files.add(filename);
                     }
                 }
-            } catch (Exception e) {
+            } catch (SftpException e) {
+                if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                    throw e;
+                }
                 // Directory might not exist yet, try to create it
-                ensureDirectoryExists(connection, directory);
+                ensureDirectoryExists(channel, directory);
                 // Return empty list since directory is new
                 return files;
             }
             
             return files;
-        }
+        });
     }
     
     /**
@@ -143,31 +214,84 @@ public class SftpConnector {
      * @return List of CSV file paths
      */
     public List<String> findDeathlogFiles(GameServer server) throws Exception {
-        try (SftpConnection connection = connect(server)) {
+        return new ArrayList<>(findDeathlogFileAttributes(server).keySet());
+    }
+    
+    /**
+     * List all CSV files in the deathlogs directory and subdirectories with their attributes
+     * The attributes come from the directory listings, so no extra round trips are needed.
+     * Subdirectories whose mtime and newest file are unchanged are served from the directory tree cache.
+     * @param server The server config
+     * @return CSV file paths relative to the deathlogs directory, sorted by name, with their attributes
+     */
+    public Map<String, SftpATTRS> findDeathlogFileAttributes(GameServer server) throws Exception {
+        return withChannel(server, channel -> {
             String baseDir = server.getDeathlogsDirectory();
-            List<String> csvFiles = new ArrayList<>();
+            String rootKey = fileKey(server, baseDir);
+            Map<String, SftpATTRS> csvFiles = new TreeMap<>();
             
             // Ensure base directory exists
             try {
-                ensureDirectoryExists(connection, baseDir);
+                ensureDirectoryExists(channel, baseDir);
+                
+                if (directoryCache.beginWalk(rootKey)) {
+                    logger.debug("Full resync of deathlog directories for server {}", server.getName());
+                }
                 
                 // Find all csv files in the directory and subdirectories
-                findCsvFilesRecursively(connection, baseDir, "", csvFiles);
-            } catch (Exception e) {
+                findCsvFilesRecursively(channel, rootKey, baseDir, "", null, csvFiles);
+            } catch (SftpException e) {
+                if (e.id == ChannelSftp.SSH_FX_NO_CONNECTION || e.id == ChannelSftp.SSH_FX_CONNECTION_LOST) {
+                    throw e;
+                }
                 logger.warn("Could not search for deathlog files: {}", e.getMessage());
             }
             
             return csvFiles;
-        }
+        });
     }
     
     /**
      * Recursively find CSV files in a directory and its subdirectories
+     * @param knownMtime Mtime of the directory as seen in its parent's listing, or null for the base directory
      */
-    private void findCsvFilesRecursively(SftpConnection connection, String baseDir, String currentPath, List<String> csvFiles) throws Exception {
+    private void findCsvFilesRecursively(ChannelSftp channel, String rootKey, String baseDir, String currentPath,
+                                         Integer knownMtime, Map<String, SftpATTRS> csvFiles) throws SftpException {
         String currentDir = currentPath.isEmpty() ? baseDir : baseDir + "/" + currentPath;
         
-        Vector<ChannelSftp.LsEntry> entries = connection.getChannel().ls(currentDir);
+        // Only list the directory again if it may have changed
+        DirectoryTreeCache.Listing listing = knownMtime == null ? null
+                : directoryCache.getReusable(rootKey, currentDir, knownMtime);
+        if (listing != null && listing.getNewestFile() != null
+                && !listing.isCurrent(statIfExists(channel, currentDir + "/" + listing.getNewestFile()))) {
+            // Appending to a file leaves the directory mtime alone, so a quiet file that grew again is only seen here
+            listing = null;
+        }
+        if (listing == null) {
+            listing = listDeathlogDirectory(channel, currentDir, knownMtime == null ? 0 : knownMtime);
+            directoryCache.put(rootKey, currentDir, listing);
+        }
+        
+        String prefix = currentPath.isEmpty() ? "" : currentPath + "/";
+        for (Map.Entry<String, SftpATTRS> file : listing.getFiles().entrySet()) {
+            csvFiles.put(prefix + file.getKey(), file.getValue());
+        }
+        
+        // Recursively search subdirectories
+        for (Map.Entry<String, Integer> subdirectory : listing.getSubdirectories().entrySet()) {
+            findCsvFilesRecursively(channel, rootKey, baseDir, prefix + subdirectory.getKey(),
+                    subdirectory.getValue(), csvFiles);
+        }
+    }
+    
+    /**
+     * List the CSV files and subdirectories of a single deathlog directory
+     */
+    private DirectoryTreeCache.Listing listDeathlogDirectory(ChannelSftp channel, String directory, int mtime) throws SftpException {
+        Map<String, SftpATTRS> files = new HashMap<>();
+        Map<String, Integer> subdirectories = new HashMap<>();
+        
+        Vector<ChannelSftp.LsEntry> entries = channel.ls(directory);
         for (ChannelSftp.LsEntry entry : entries) {
             String filename = entry.getFilename();
             
@@ -176,18 +300,41 @@ public class SftpConnector {
                 continue;
             }
             
-            String relativePath = currentPath.isEmpty() ? filename : currentPath + "/" + filename;
-            
             if (entry.getAttrs().isDir()) {
-                // Recursively search subdirectory
-                findCsvFilesRecursively(connection, baseDir, relativePath, csvFiles);
+                subdirectories.put(filename, entry.getAttrs().getMTime());
             } else if (filename.toLowerCase().endsWith(".csv")) {
-                // Add CSV file to the list
-                csvFiles.add(relativePath);
+                files.put(filename, entry.getAttrs());
+            }
+        }
+        
+        return new DirectoryTreeCache.Listing(mtime, files, subdirectories);
+    }
+    
+    /**
+     * Get the attributes of a remote file
+     * @return The attributes, or null if the file does not exist
+     */
+    private SftpATTRS statIfExists(ChannelSftp channel, String path) throws SftpException {
+        try {
+            return channel.stat(path);
+        } catch (SftpException e) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw e;
             }
+            return null;
         }
     }
     
+    /**
+     * Get the attributes (size, modification time) of a remote file
+     * @param server The server config
+     * @param filePath Path to the file
+     * @return The file attributes
+     */
+    public SftpATTRS stat(GameServer server, String filePath) throws Exception {
+        return withChannel(server, channel -> channel.stat(filePath));
+    }
+    
     /**
      * Read a file from SFTP
      * @param server The server config
@@ -195,14 +342,167 @@ public class SftpConnector {
      * @return The file content as a string
      */
     public String readFile(GameServer server, String filePath) throws Exception {
-        try (SftpConnection connection = connect(server)) {
-            try (InputStream inputStream = connection.getChannel().get(filePath);
+        return withChannel(server, channel -> {
+            try (InputStream inputStream = get(server, channel, filePath, 0);
                  ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
                 
                 IOUtils.copy(inputStream, outputStream);
                 return outputStream.toString(StandardCharsets.UTF_8);
             }
+        });
+    }
+    
+    /**
+     * Stream a file line by line without holding its content in memory
+     * If the connection drops and the read is retried, lines already handed to the handler are not delivered again
+     * @param server The server config
+     * @param filePath Path to the file
+     * @param handler Receives each line with its zero-based line number
+     * @return The number of lines in the file
+     */
+    public long forEachLine(GameServer server, String filePath, LineHandler handler) throws Exception {
+        long[] delivered = {0};
+        return withChannel(server, channel -> {
+            long lineNumber = 0;
+            try (LineReader reader = new LineReader(get(server, channel, filePath, 0))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (lineNumber >= delivered[0]) {
+                        handler.handle(lineNumber, line);
+                        delivered[0] = lineNumber + 1;
+                    }
+                    lineNumber++;
+                }
+            }
+            return lineNumber;
+        });
+    }
+    
+    /**
+     * Stream a file from the logs directory line by line
+     * @param server The server config
+     * @param filename Name of the log file
+     * @param handler Receives each line with its zero-based line number
+     * @return The number of lines in the file
+     */
+    public long forEachLogLine(GameServer server, String filename, LineHandler handler) throws Exception {
+        return forEachLine(server, server.getLogDirectory() + "/" + filename, handler);
+    }
+    
+    /**
+     * Stream a deathlog CSV file line by line
+     * @param server The server config
+     * @param filename Name of the CSV file (including subdirectory path)
+     * @param handler Receives each line with its zero-based line number
+     * @return The number of lines in the file
+     */
+    public long forEachDeathlogLine(GameServer server, String filename, LineHandler handler) throws Exception {
+        return forEachLine(server, server.getDeathlogsDirectory() + "/" + filename, handler);
+    }
+    
+    /**
+     * Copy a remote file into a local file, starting at a byte offset
+     * The local file is truncated to the offset before copying, so a retried transfer never duplicates bytes
+     * @param server The server config
+     * @param filePath Path to the remote file
+     * @param offset Offset to start copying from, also the position written to in the local file
+     * @param target Open channel on the local file
+     * @return The number of bytes copied
+     */
+    public long copyFrom(GameServer server, String filePath, long offset, FileChannel target) throws Exception {
+        return withChannel(server, channel -> {
+            target.truncate(offset);
+            target.position(offset);
+            
+            long copied = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream inputStream = get(server, channel, filePath, offset)) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                    while (bytes.hasRemaining()) {
+                        target.write(bytes);
+                    }
+                    copied += read;
+                }
+            }
+            return copied;
+        });
+    }
+    
+    /**
+     * Download several files concurrently over separate channels of one pooled session
+     * Up to sftp.parallel.channels channels are multiplexed over the session's SSH connection
+     * @param server The server config
+     * @param filePaths Paths of the files to download
+     * @return The file contents, in the same order as the paths
+     */
+    public List<byte[]> readFiles(GameServer server, List<String> filePaths) throws Exception {
+        if (filePaths.isEmpty()) {
+            return new ArrayList<>();
         }
+        
+        return withSession(server, session -> {
+            byte[][] contents = new byte[filePaths.size()][];
+            AtomicInteger nextFile = new AtomicInteger();
+            int workers = Math.min(parallelChannels, filePaths.size());
+            
+            List<Future<Void>> downloads = new ArrayList<>();
+            for (int worker = 0; worker < workers; worker++) {
+                boolean primary = worker == 0;
+                downloads.add(downloadExecutor.submit(() -> {
+                    ChannelSftp channel = primary ? session.getChannel() : session.openChannel();
+                    if (channel == null) {
+                        // The host's channel limit is reached, the other workers share the files
+                        return null;
+                    }
+                    try {
+                        int index;
+                        while ((index = nextFile.getAndIncrement()) < filePaths.size()) {
+                            try (InputStream inputStream = get(server, channel, filePaths.get(index), 0)) {
+                                contents[index] = IOUtils.toByteArray(inputStream);
+                            }
+                        }
+                    } finally {
+                        if (!primary) {
+                            session.closeChannel(channel);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            
+            // Wait for every worker so no channel is still in use when the session is released
+            Exception failure = null;
+            for (Future<Void> download : downloads) {
+                try {
+                    download.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            
+            return Arrays.asList(contents);
+        });
+    }
+    
+    /**
+     * Download several deathlog CSV files concurrently
+     * @param server The server config
+     * @param filenames Names of the CSV files (including subdirectory path)
+     * @return The file contents, in the same order as the names
+     */
+    public List<byte[]> readDeathlogFiles(GameServer server, List<String> filenames) throws Exception {
+        List<String> filePaths = new ArrayList<>();
+        for (String filename : filenames) {
+            filePaths.add(server.getDeathlogsDirectory() + "/" + filename);
+        }
+        return readFiles(server, filePaths);
     }
     
     /**
@@ -227,25 +527,214 @@ public class SftpConnector {
         return readFile(server, filePath);
     }
     
+    /**
+     * Read lines appended to a file since the previous call
+     * Only the bytes after the last read offset are transferred; a trailing partial line is held back
+     * until it is completed by a later poll. A rotated file is drained before the new file is read.
+     * @param server The server config
+     * @param filePath Path to the file
+     * @return The new complete lines
+     */
+    public List<String> readNewLines(GameServer server, String filePath) throws Exception {
+        return readTail(server, filePath, getTail(server, filePath), 0, -1);
+    }
+    
+    /**
+     * Read lines appended to a file since the previous call, given the size from a stat just made
+     * Saves the stat the transfer would otherwise start with
+     * @param server The server config
+     * @param filePath Path to the file
+     * @param size Current size of the file
+     * @return The new complete lines
+     */
+    public List<String> readNewLines(GameServer server, String filePath, long size) throws Exception {
+        return readTail(server, filePath, getTail(server, filePath), 0, size);
+    }
+    
     /**
      * Read lines from a file after a specific line number
+     * Continues from the tracked byte offset when the caller resumes where the previous read ended,
+     * otherwise the file is rescanned from the start
      * @param server The server config
      * @param filePath Path to the file
      * @param afterLine Only read lines after this line number
      * @return The new lines
      */
     public List<String> readLinesAfter(GameServer server, String filePath, long afterLine) throws Exception {
-        String content = readFile(server, filePath);
-        String[] allLines = content.split("\n");
+        FileTail tail = getTail(server, filePath);
+        synchronized (tail) {
+            if (tail.getLineCount() != afterLine + 1) {
+                tail.reset();
+            }
+            return readTail(server, filePath, tail, afterLine + 1, -1);
+        }
+    }
+    
+    /**
+     * Get the read position of a tailed file, for saving across restarts
+     * @param server The server config
+     * @param filePath Path to the file
+     * @return The position, or null if the file has not been read
+     */
+    public FileTail.Position getTailPosition(GameServer server, String filePath) {
+        FileTail tail = tails.get(fileKey(server, filePath));
+        return tail == null ? null : tail.getPosition();
+    }
+    
+    /**
+     * Continue tailing a file from a known position, such as a saved checkpoint or a complete download
+     * @param server The server config
+     * @param filePath Path to the file
+     * @param position Position to read on from
+     */
+    public void restoreTail(GameServer server, String filePath, FileTail.Position position) {
+        getTail(server, filePath).restore(position);
+    }
+    
+    /**
+     * Transfer the bytes appended since the tail's offset and split them into lines
+     * A file that shrank or no longer has the bytes seen before was rotated. The rest of the rotated file
+     * is read from its new name first, then the new file from the start, so no lines are lost and nothing
+     * already read is downloaded again. The last bytes before the offset are downloaded again with the new
+     * ones and compared, so a replaced file is recognized within the same transfer; the start of the file
+     * is only read separately on the first poll after a restored position, before the tail has seen any bytes.
+     * The check also runs when the size has not changed, so a file replaced by one of the same size is
+     * recognized too.
+     * @param knownSize Size of the file from a stat the caller just made, or -1 to stat it here
+     */
+    private List<String> readTail(GameServer server, String filePath, FileTail tail, long firstLine, long knownSize) throws Exception {
+        return withChannel(server, channel -> {
+            synchronized (tail) {
+                long size = knownSize >= 0 ? knownSize : channel.stat(filePath).getSize();
+                if (size == 0 && tail.getOffset() == 0) {
+                    return new ArrayList<>();
+                }
+                
+                List<String> lines = new ArrayList<>();
+                if (tail.getOffset() > 0) {
+                    boolean replaced = size < tail.getOffset();
+                    if (!replaced && tail.getRecentLength() > 0) {
+                        int overlap = tail.getRecentLength();
+                        try (InputStream inputStream = get(server, channel, filePath, tail.getOffset() - overlap)) {
+                            if (tail.matchesRecent(inputStream.readNBytes(overlap))) {
+                                lines.addAll(tail.consume(inputStream, firstLine));
+                                return lines;
+                            }
+                        }
+                        replaced = true;
+                    } else if (!replaced) {
+                        replaced = !headMatches(server, channel, filePath, tail);
+                    }
+                    
+                    if (replaced) {
+                        String rotatedPath = findRotatedFile(server, channel, filePath, tail);
+                        if (rotatedPath != null) {
+                            logger.info("File {} on server {} was rotated to {}, reading the rest of it before switching",
+                                    filePath, server.getName(), rotatedPath);
+                            try (InputStream inputStream = get(server, channel, rotatedPath, tail.getOffset())) {
+                                lines.addAll(tail.consume(inputStream, firstLine));
+                            }
+                            String last = tail.drainPartial();
+                            if (last != null) {
+                                lines.add(last);
+                            }
+                        } else {
+                            logger.info("File {} on server {} was replaced and the old file was not found, reading the new file from the start",
+                                    filePath, server.getName());
+                        }
+                        tail.rotate();
+                    }
+                }
+                
+                if (size > tail.getOffset()) {
+                    try (InputStream inputStream = get(server, channel, filePath, tail.getOffset())) {
+                        lines.addAll(tail.consume(inputStream, firstLine));
+                    }
+                }
+                return lines;
+            }
+        });
+    }
+    
+    /**
+     * Check whether a file still starts with the bytes the tail saw when it read the start of the file
+     */
+    private boolean headMatches(GameServer server, ChannelSftp channel, String filePath, FileTail tail) throws Exception {
+        byte[] head = readHead(server, channel, filePath, tail.getHeadLength());
+        return tail.matchesHead(head, head.length);
+    }
+    
+    /**
+     * Find the file a tailed file was renamed to
+     * Candidates sit in the same directory, share the file name up to its first dot, are at least as long as
+     * the part already read and start with the same bytes. The most recently modified match wins.
+     * @return Path of the rotated file, or null if none matches
+     */
+    private String findRotatedFile(GameServer server, ChannelSftp channel, String filePath, FileTail tail) throws Exception {
+        int slash = filePath.lastIndexOf('/');
+        String directory = slash >= 0 ? filePath.substring(0, slash) : ".";
+        String name = filePath.substring(slash + 1);
+        int dot = name.indexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
         
-        List<String> newLines = new ArrayList<>();
-        for (int i = 0; i < allLines.length; i++) {
-            if (i > afterLine) {
-                newLines.add(allLines[i]);
+        List<ChannelSftp.LsEntry> candidates = new ArrayList<>();
+        // JSch returns a raw Vector of LsEntry
+        @SuppressWarnings("unchecked")
+        Vector<ChannelSftp.LsEntry> entries = channel.ls(directory);
+        for (ChannelSftp.LsEntry entry : entries) {
+            SftpATTRS attrs = entry.getAttrs();
+            String filename = entry.getFilename();
+            if (!attrs.isDir() && !filename.equals(name) && filename.startsWith(stem)
+                    && attrs.getSize() >= tail.getOffset()) {
+                candidates.add(entry);
             }
         }
+        candidates.sort((a, b) -> Integer.compare(b.getAttrs().getMTime(), a.getAttrs().getMTime()));
         
-        return newLines;
+        // Each check costs a small download, so only the newest few are considered
+        for (ChannelSftp.LsEntry entry : candidates.subList(0, Math.min(candidates.size(), 3))) {
+            String candidatePath = directory + "/" + entry.getFilename();
+            if (headMatches(server, channel, candidatePath, tail)) {
+                return candidatePath;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Download at most the first bytes of a remote file
+     * @param server The server config
+     * @param filePath Path to the file
+     * @param length Maximum number of bytes
+     * @return The bytes, fewer if the file is shorter
+     */
+    public byte[] readHead(GameServer server, String filePath, int length) throws Exception {
+        return withChannel(server, channel -> readHead(server, channel, filePath, length));
+    }
+    
+    private byte[] readHead(GameServer server, ChannelSftp channel, String filePath, int length) throws Exception {
+        try (InputStream inputStream = get(server, channel, filePath, 0)) {
+            return inputStream.readNBytes(length);
+        }
+    }
+    
+    /**
+     * Start downloading a file from an offset, within the host's bandwidth budget
+     */
+    private InputStream get(GameServer server, ChannelSftp channel, String filePath, long offset) throws SftpException {
+        return hostLimiter.throttle(server.getHost(), channel.get(filePath, null, offset));
+    }
+    
+    private FileTail getTail(GameServer server, String filePath) {
+        return tails.computeIfAbsent(fileKey(server, filePath), k -> new FileTail());
+    }
+    
+    /**
+     * Key identifying a remote file as read by one server of one guild
+     * Two guilds watching the same game server keep separate positions, so neither misses lines the other read
+     */
+    private static String fileKey(GameServer server, String filePath) {
+        return server.getGuildId() + ":" + server.getName() + "@" + server.getHost() + ":" + server.getPort() + "/" + filePath;
     }
     
     /**
@@ -273,33 +762,26 @@ public class SftpConnector {
     }
     
     /**
-     * Holder class for SFTP session and channel
+     * Receives the lines of a streamed file one at a time
      */
-    private static class SftpConnection implements AutoCloseable {
-        private final Session session;
-        private final ChannelSftp channel;
-        
-        public SftpConnection(Session session, ChannelSftp channel) {
-            this.session = session;
-            this.channel = channel;
-        }
-        
-        public Session getSession() {
-            return session;
-        }
-        
-        public ChannelSftp getChannel() {
-            return channel;
-        }
-        
-        @Override
-        public void close() {
-            if (channel != null && channel.isConnected()) {
-                channel.disconnect();
-            }
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
-        }
+    @FunctionalInterface
+    public interface LineHandler {
+        void handle(long lineNumber, String line) throws Exception;
+    }
+    
+    /**
+     * An operation performed on a pooled SFTP channel
+     */
+    @FunctionalInterface
+    private interface SftpOperation<T> {
+        T execute(ChannelSftp channel) throws Exception;
+    }
+    
+    /**
+     * An operation performed on a pooled SFTP session
+     */
+    @FunctionalInterface
+    private interface SessionOperation<T> {
+        T execute(SftpSessionPool.PooledSession session) throws Exception;
     }
 }
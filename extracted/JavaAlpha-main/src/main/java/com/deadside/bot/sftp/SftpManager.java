@@ -1,11 +1,14 @@
 package com.deadside.bot.sftp;
 
 import com.deadside.bot.db.models.GameServer;
+import com.jcraft.jsch.SftpATTRS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Manager for SFTP operations
@@ -43,6 +46,18 @@ public class SftpManager {
         }
     }
     
+    /**
+     * Get killfeed CSV files for a server together with their size and modification time
+     */
+    public Map<String, SftpATTRS> getKillfeedFileAttributes(GameServer server) {
+        try {
+            return connector.findDeathlogFileAttributes(server);
+        } catch (Exception e) {
+            logger.error("Error listing killfeed files for server: {}", server.getName(), e);
+            return new TreeMap<>();
+        }
+    }
+    
     /**
      * Get server log files
      */
@@ -80,6 +95,32 @@ public class SftpManager {
         }
     }
     
+    /**
+     * Stream a killfeed file line by line
+     * @return The number of lines read, or 0 if the file could not be read
+     */
+    public long forEachKillfeedLine(GameServer server, String filename, SftpConnector.LineHandler handler) {
+        try {
+            return connector.forEachDeathlogLine(server, filename, handler);
+        } catch (Exception e) {
+            logger.error("Error reading killfeed file {} for server: {}", filename, server.getName(), e);
+            return 0;
+        }
+    }
+    
+    /**
+     * Stream a log file line by line
+     * @return The number of lines read, or 0 if the file could not be read
+     */
+    public long forEachLogLine(GameServer server, String filename, SftpConnector.LineHandler handler) {
+        try {
+            return connector.forEachLogLine(server, filename, handler);
+        } catch (Exception e) {
+            logger.error("Error reading log file {} for server: {}", filename, server.getName(), e);
+            return 0;
+        }
+    }
+    
     /**
      * Read new lines from a killfeed file since last check
      */
@@ -0,0 +1,354 @@
+package com.deadside.bot.sftp;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.GameServer;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of long-lived SFTP sessions shared by every connector
+ * Sessions are keyed by host, port, username and a digest of the password so that all game servers
+ * hosted behind the same SFTP account reuse one SSH connection, and a session authenticated by one
+ * guild is never handed to another that only knows the host and username
+ */
+public class SftpSessionPool {
+    private static final Logger logger = LoggerFactory.getLogger(SftpSessionPool.class);
+    private static final int EVICTION_INTERVAL_SECONDS = 60;
+    private static SftpSessionPool instance;
+
+    private final Map<String, HostPool> pools = new ConcurrentHashMap<>();
+    private final HostLimiter hostLimiter = HostLimiter.getInstance();
+    private final ScheduledExecutorService evictor;
+    private final int timeout;
+    private final int maxSessionsPerAccount;
+    private final long idleTimeout;
+    private final int keepaliveInterval;
+    private volatile boolean closed = false;
+
+    private SftpSessionPool() {
+        Config config = Config.getInstance();
+        this.timeout = config.getSftpConnectTimeout();
+        this.maxSessionsPerAccount = config.getSftpPoolMaxSessionsPerAccount();
+        this.idleTimeout = config.getSftpPoolIdleTimeout();
+        this.keepaliveInterval = config.getSftpKeepaliveInterval();
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sftp-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleAtFixedRate(this::evictIdleSessions,
+                EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static synchronized SftpSessionPool getInstance() {
+        if (instance == null) {
+            instance = new SftpSessionPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Borrow a connected session for a server, opening a new one if none is idle
+     * Callers must hand the session back with {@link #release} or {@link #invalidate}
+     * @param server The server config
+     * @return A connected session with an open SFTP channel
+     * @throws SessionUnavailableException If waiting for a free session or host slot timed out
+     * @throws JSchException If connecting to the server failed
+     */
+    public PooledSession borrow(GameServer server) throws JSchException {
+        if (closed) {
+            throw new SessionUnavailableException("SFTP session pool has been shut down");
+        }
+
+        HostPool pool = pools.computeIfAbsent(poolKey(server), key -> new HostPool(accountName(server), server.getHost()));
+        try {
+            if (!pool.permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new SessionUnavailableException("Timed out waiting for a free SFTP session to " + pool.name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SessionUnavailableException("Interrupted while waiting for an SFTP session to " + pool.name, e);
+        }
+
+        try {
+            PooledSession session;
+            while ((session = pool.idle.pollFirst()) != null) {
+                if (session.isUsable()) {
+                    return session;
+                }
+                // Dropped by the remote end while idle
+                session.disconnect();
+            }
+            return open(server, pool);
+        } catch (JSchException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a healthy session to the pool
+     */
+    public void release(PooledSession session) {
+        if (!closed && session.isUsable()) {
+            session.lastUsed = System.currentTimeMillis();
+            session.pool.idle.offerFirst(session);
+        } else {
+            session.disconnect();
+        }
+        session.pool.permits.release();
+    }
+
+    /**
+     * Discard a session that failed so the next borrow reconnects
+     */
+    public void invalidate(PooledSession session) {
+        session.disconnect();
+        session.pool.permits.release();
+    }
+
+    /**
+     * Open a new session and SFTP channel
+     */
+    private PooledSession open(GameServer server, HostPool pool) throws JSchException {
+        acquireHostSession(server.getHost());
+
+        JSch jsch = new JSch();
+        Session session = null;
+        ChannelSftp channel = null;
+
+        try {
+            session = jsch.getSession(server.getUsername(), server.getHost(), server.getPort());
+            session.setPassword(server.getPassword());
+
+            Properties config = new Properties();
+            config.put("StrictHostKeyChecking", "no");
+            session.setConfig(config);
+            session.setTimeout(timeout);
+
+            session.connect(timeout);
+
+            // Keep the connection alive between scheduler ticks and detect dead peers
+            session.setServerAliveInterval(keepaliveInterval);
+            session.setServerAliveCountMax(3);
+
+            channel = (ChannelSftp) session.openChannel("sftp");
+            channel.connect(timeout);
+
+            logger.debug("Opened pooled SFTP session to {}", pool.name);
+            return new PooledSession(pool, session, channel, timeout, hostLimiter);
+        } catch (JSchException | RuntimeException e) {
+            // Make sure to close session if an error occurs
+            if (channel != null) {
+                channel.disconnect();
+            }
+            if (session != null) {
+                session.disconnect();
+            }
+            hostLimiter.releaseSession(server.getHost());
+            throw e;
+        }
+    }
+
+    /**
+     * Take a session slot on a host, closing an idle session of another account on the same host if that frees one
+     */
+    private void acquireHostSession(String host) throws JSchException {
+        if (hostLimiter.tryAcquireSession(host)) {
+            return;
+        }
+
+        for (HostPool other : pools.values()) {
+            if (!other.host.equals(host)) {
+                continue;
+            }
+            PooledSession idle = other.idle.pollLast();
+            if (idle != null) {
+                logger.debug("Closing idle SFTP session to {} to stay within the host's session limit", other.name);
+                idle.disconnect();
+                break;
+            }
+        }
+
+        try {
+            if (!hostLimiter.acquireSession(host, timeout)) {
+                throw new SessionUnavailableException("Timed out waiting for a free SFTP session slot on host " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SessionUnavailableException("Interrupted while waiting for an SFTP session slot on host " + host, e);
+        }
+    }
+
+    /**
+     * Close idle sessions that have not been used within the idle timeout
+     */
+    private void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+
+        for (HostPool pool : pools.values()) {
+            Iterator<PooledSession> iterator = pool.idle.iterator();
+            while (iterator.hasNext()) {
+                PooledSession session = iterator.next();
+                if ((session.lastUsed < cutoff || !session.isUsable()) && pool.idle.remove(session)) {
+                    logger.debug("Evicting idle SFTP session to {}", pool.name);
+                    session.disconnect();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close every idle session and stop accepting new borrows
+     */
+    public void shutdown() {
+        closed = true;
+        evictor.shutdownNow();
+
+        for (HostPool pool : pools.values()) {
+            PooledSession session;
+            while ((session = pool.idle.pollFirst()) != null) {
+                session.disconnect();
+            }
+        }
+        logger.info("SFTP session pool shut down");
+    }
+
+    private static String poolKey(GameServer server) {
+        return accountName(server) + "#" + credentialDigest(server.getPassword());
+    }
+
+    /**
+     * Name of a server's SFTP account for logs, without its credentials
+     */
+    private static String accountName(GameServer server) {
+        return server.getUsername() + "@" + server.getHost() + ":" + server.getPort();
+    }
+
+    /**
+     * Digest of a password, so that pool keys tell credentials apart without holding them
+     */
+    private static String credentialDigest(String password) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Idle sessions and the session cap for one host/port/user and password
+     */
+    private class HostPool {
+        private final String name;
+        private final String host;
+        private final ConcurrentLinkedDeque<PooledSession> idle = new ConcurrentLinkedDeque<>();
+        private final Semaphore permits = new Semaphore(maxSessionsPerAccount, true);
+
+        HostPool(String name, String host) {
+            this.name = name;
+            this.host = host;
+        }
+    }
+
+    /**
+     * A pooled SSH session with its primary SFTP channel
+     */
+    public static class PooledSession {
+        private final HostPool pool;
+        private final Session session;
+        private final ChannelSftp channel;
+        private final int timeout;
+        private final HostLimiter hostLimiter;
+        private volatile long lastUsed;
+        private boolean closed = false;
+
+        private PooledSession(HostPool pool, Session session, ChannelSftp channel, int timeout, HostLimiter hostLimiter) {
+            this.pool = pool;
+            this.session = session;
+            this.channel = channel;
+            this.timeout = timeout;
+            this.hostLimiter = hostLimiter;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public ChannelSftp getChannel() {
+            return channel;
+        }
+
+        /**
+         * Open an additional SFTP channel on this session, multiplexed over the same SSH connection
+         * The caller owns the channel and must hand it back with {@link #closeChannel}
+         * @return The channel, or null if the host's channel limit is reached
+         */
+        public ChannelSftp openChannel() throws JSchException {
+            if (!hostLimiter.tryAcquireChannel(pool.host)) {
+                return null;
+            }
+            try {
+                ChannelSftp extra = (ChannelSftp) session.openChannel("sftp");
+                extra.connect(timeout);
+                return extra;
+            } catch (JSchException | RuntimeException e) {
+                hostLimiter.releaseChannel(pool.host);
+                throw e;
+            }
+        }
+
+        /**
+         * Close an additional channel opened with {@link #openChannel}
+         */
+        public void closeChannel(ChannelSftp extra) {
+            extra.disconnect();
+            hostLimiter.releaseChannel(pool.host);
+        }
+
+        public boolean isUsable() {
+            return session.isConnected() && channel.isConnected() && !channel.isClosed();
+        }
+
+        private void disconnect() {
+            if (channel.isConnected()) {
+                channel.disconnect();
+            }
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+
+            // Free the host's session slot exactly once
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            hostLimiter.releaseSession(pool.host);
+        }
+    }
+}
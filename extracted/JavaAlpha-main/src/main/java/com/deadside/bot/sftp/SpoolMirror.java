@@ -0,0 +1,286 @@
+package com.deadside.bot.sftp;
+
+import com.deadside.bot.config.Config;
+import com.deadside.bot.db.models.GameServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local append-only mirror of remote Deadside logs and deathlog CSVs
+ * Each sync fetches only the bytes appended to the remote file since the previous sync and appends them
+ * to the local copy. Parsers read the local copy through memory-mapped files, and the spool can be
+ * replayed or backfilled later without contacting the game host again. Each guild's server has a spool
+ * of its own, so two guilds watching the same game host keep separate copies and read positions.
+ */
+public class SpoolMirror {
+    private static final Logger logger = LoggerFactory.getLogger(SpoolMirror.class);
+
+    private final Path root;
+    private final SftpConnector connector;
+
+    // Offset just past the last line handed to a parser, per spooled file
+    private final Map<Path, Long> parsedOffsets = new ConcurrentHashMap<>();
+    // Copies of rotated files whose last lines have not been handed to a parser yet, per spooled file
+    private final Map<Path, Deque<Path>> rotatedCopies = new ConcurrentHashMap<>();
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+    public SpoolMirror(Path root, SftpConnector connector) {
+        this.root = root;
+        this.connector = connector;
+    }
+
+    /**
+     * Create the spool configured by spool.directory
+     * @param connector Connector used to fetch remote bytes
+     * @return The spool, or null if spooling is disabled
+     */
+    public static SpoolMirror fromConfig(SftpConnector connector) {
+        String directory = Config.getInstance().getSpoolDirectory();
+        if (directory.isEmpty()) {
+            return null;
+        }
+        logger.info("Spooling remote logs to {}", directory);
+        return new SpoolMirror(Paths.get(directory), connector);
+    }
+
+    /**
+     * Bring the local copy of a remote file up to date
+     * If the remote file shrank or no longer starts with the same bytes as the local copy it was rotated or
+     * replaced; the old local copy is kept under a timestamped name until {@link #readNewLines} has handed
+     * its remaining lines to the parser, and a new copy is started
+     * @param server The server config
+     * @param remotePath Path of the remote file
+     * @return Path of the local copy
+     */
+    public Path sync(GameServer server, String remotePath) throws Exception {
+        Path local = getLocalPath(server, remotePath);
+        synchronized (lockFor(local)) {
+            Files.createDirectories(local.getParent());
+            long localSize = Files.exists(local) ? Files.size(local) : 0;
+            long remoteSize = connector.stat(server, remotePath).getSize();
+
+            if (remoteSize < localSize || (remoteSize > localSize && localSize > 0 && !headMatches(server, remotePath, local))) {
+                Path rotated = local.resolveSibling(local.getFileName() + "." + System.currentTimeMillis());
+                logger.info("Remote file {} on server {} was replaced, moving spooled copy to {}",
+                        remotePath, server.getName(), rotated);
+                Files.move(local, rotated);
+                parsedOffsets.put(rotated, parsedOffsets.getOrDefault(local, 0L));
+                parsedOffsets.remove(local);
+                rotatedCopies.computeIfAbsent(local, k -> new ArrayDeque<>()).addLast(rotated);
+                localSize = 0;
+            }
+
+            if (remoteSize > localSize) {
+                try (FileChannel target = FileChannel.open(local,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    long copied = connector.copyFrom(server, remotePath, localSize, target);
+                    logger.debug("Spooled {} new bytes of {} for server {}", copied, remotePath, server.getName());
+                }
+            }
+            return local;
+        }
+    }
+
+    /**
+     * Sync a remote file and hand the complete lines appended since the previous call to a handler
+     * A trailing partial line stays in the spool until a later sync completes it. If the file was rotated,
+     * the rest of the rotated copy, including its last unterminated line, is handed over first and the
+     * copy is then deleted.
+     * @param server The server config
+     * @param remotePath Path of the remote file
+     * @param handler Receives each new line, numbered from the start of the new region
+     * @return The number of lines handed over
+     */
+    public long readNewLines(GameServer server, String remotePath, SftpConnector.LineHandler handler) throws Exception {
+        Path local = sync(server, remotePath);
+        synchronized (lockFor(local)) {
+            long lines = drainRotatedCopies(local, handler);
+            long start = parsedOffsets.getOrDefault(local, 0L);
+            try (FileChannel channel = FileChannel.open(local, StandardOpenOption.READ)) {
+                long end = endOfLastLine(channel, start, channel.size());
+                lines += forEachLine(channel, start, end, lines, handler);
+                parsedOffsets.put(local, end);
+                return lines;
+            }
+        }
+    }
+
+    /**
+     * Hand the unread lines of a spooled file's rotated copies to a handler and delete each copy once done
+     * A copy whose lines fail to be handled stays, and is read again from the same offset on the next call
+     * Must be called holding the spooled file's lock
+     * @return The number of lines handed over
+     */
+    private long drainRotatedCopies(Path local, SftpConnector.LineHandler handler) throws Exception {
+        Deque<Path> copies = rotatedCopies.get(local);
+        long lines = 0;
+        Path rotated;
+        while (copies != null && (rotated = copies.peekFirst()) != null) {
+            long start = parsedOffsets.getOrDefault(rotated, 0L);
+            if (Files.exists(rotated)) {
+                try (FileChannel channel = FileChannel.open(rotated, StandardOpenOption.READ)) {
+                    lines += forEachLine(channel, start, channel.size(), lines, handler);
+                }
+            }
+            Files.deleteIfExists(rotated);
+            parsedOffsets.remove(rotated);
+            locks.remove(rotated);
+            copies.removeFirst();
+            logger.debug("Deleted spooled copy {} after reading the rest of it", rotated);
+        }
+        if (copies != null && copies.isEmpty()) {
+            rotatedCopies.remove(local);
+        }
+        return lines;
+    }
+
+    /**
+     * Get how far the spooled copy of a remote file has been handed to parsers, for saving across restarts
+     * The line count is not tracked for spooled files and is always 0
+     * @param server The server config
+     * @param remotePath Path of the remote file
+     * @return The position, or null if no lines of the file have been read
+     */
+    public FileTail.Position getParsedPosition(GameServer server, String remotePath) throws IOException {
+        Path local = getLocalPath(server, remotePath);
+        synchronized (lockFor(local)) {
+            Long offset = parsedOffsets.get(local);
+            if (offset == null) {
+                return null;
+            }
+            return new FileTail.Position(offset, 0, readLocalHead(local, (int) Math.min(offset, FileTail.HEAD_SIZE)));
+        }
+    }
+
+    /**
+     * Continue handing a spooled file to parsers from a saved position
+     * Only applied if the spooled copy is still there, at least as long as the position and starting
+     * with the same bytes; otherwise the file is parsed from the start of the copy as before
+     * @param server The server config
+     * @param remotePath Path of the remote file
+     * @param position The saved position
+     * @return True if the position was applied
+     */
+    public boolean restoreParsedPosition(GameServer server, String remotePath, FileTail.Position position) throws IOException {
+        Path local = getLocalPath(server, remotePath);
+        synchronized (lockFor(local)) {
+            if (!Files.exists(local) || Files.size(local) < position.offset()) {
+                return false;
+            }
+            byte[] head = readLocalHead(local, position.head().length);
+            if (!Arrays.equals(head, position.head())) {
+                return false;
+            }
+            parsedOffsets.put(local, position.offset());
+            return true;
+        }
+    }
+
+    /**
+     * Replay every complete line of a spooled file without contacting the game host
+     * @param local Path of the spooled file
+     * @param handler Receives each line with its zero-based line number
+     * @return The number of lines handed over
+     */
+    public long replay(Path local, SftpConnector.LineHandler handler) throws Exception {
+        synchronized (lockFor(local)) {
+            try (FileChannel channel = FileChannel.open(local, StandardOpenOption.READ)) {
+                return forEachLine(channel, 0, endOfLastLine(channel, 0, channel.size()), 0, handler);
+            }
+        }
+    }
+
+    /**
+     * Get the local path mirroring a remote file
+     * Layout: spool root / guild ID / server name / host_port / remote path, with relative segments removed
+     * and characters that are not safe in file names replaced
+     */
+    public Path getLocalPath(GameServer server, String remotePath) {
+        Path local = root.resolve(String.valueOf(server.getGuildId()))
+                .resolve(server.getName().replaceAll("[^A-Za-z0-9_-]", "_"))
+                .resolve(server.getHost() + "_" + server.getPort());
+        for (String segment : remotePath.split("/")) {
+            if (!segment.isEmpty() && !segment.equals(".") && !segment.equals("..")) {
+                local = local.resolve(segment);
+            }
+        }
+        return local;
+    }
+
+    private long forEachLine(FileChannel channel, long start, long end, long firstLineNumber,
+                             SftpConnector.LineHandler handler) throws Exception {
+        long lineNumber = firstLineNumber;
+        try (LineReader reader = new LineReader(new MappedFileInputStream(channel, start, end))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                handler.handle(lineNumber++, line);
+            }
+        }
+        return lineNumber - firstLineNumber;
+    }
+
+    /**
+     * Check whether the remote file still starts with the same bytes as the local copy
+     */
+    private boolean headMatches(GameServer server, String remotePath, Path local) throws Exception {
+        byte[] head = readLocalHead(local, FileTail.HEAD_SIZE);
+        byte[] remoteHead = connector.readHead(server, remotePath, head.length);
+        return Arrays.equals(head, remoteHead);
+    }
+
+    /**
+     * Read up to length leading bytes of a spooled file
+     */
+    private static byte[] readLocalHead(Path local, int length) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(local, StandardOpenOption.READ)) {
+            while (head.hasRemaining()) {
+                if (channel.read(head, head.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(head.array(), head.position());
+    }
+
+    /**
+     * Find the offset just past the last newline in a range, so only complete lines are parsed
+     */
+    private static long endOfLastLine(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = end;
+        while (position > start) {
+            int length = (int) Math.min(buffer.capacity(), position - start);
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position - length + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position - length + i + 1;
+                }
+            }
+            position -= length;
+        }
+        return start;
+    }
+
+    private Object lockFor(Path local) {
+        return locks.computeIfAbsent(local, k -> new Object());
+    }
+}
@@ -0,0 +1,88 @@
+package com.deadside.bot.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over 128-bit hashes, bounded in memory
+ * Keys are added to the current generation; once it holds its capacity it replaces the previous
+ * generation and a fresh one is started, so the filter remembers between one and two capacities of the
+ * most recent keys and its false positive rate never grows past the configured one.
+ * Callers pass keys that are already uniformly distributed, such as a digest, so no hashing is done here.
+ */
+public class BloomFilter {
+    private final int capacity;
+    private final int bitCount;
+    private final int hashCount;
+    private final AtomicInteger added = new AtomicInteger();
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+
+    /**
+     * @param capacity Keys held by each generation
+     * @param falsePositiveRate Chance of a key that was never added being reported as present
+     */
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        this.capacity = capacity;
+        long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        this.current = new AtomicLongArray((bitCount + 63) / 64);
+        this.previous = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    /**
+     * Check whether a key may have been added
+     * @param high First 64 bits of the key
+     * @param low Last 64 bits of the key
+     * @return False if the key was certainly not added
+     */
+    public boolean mightContain(long high, long low) {
+        return contains(current, high, low) || contains(previous, high, low);
+    }
+
+    /**
+     * Add a key
+     * @param high First 64 bits of the key
+     * @param low Last 64 bits of the key
+     */
+    public void put(long high, long low) {
+        AtomicLongArray bits = current;
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(high, low, i);
+            long mask = 1L << index;
+            int word = index >>> 6;
+            long value;
+            while (((value = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) {
+                // Another thread changed the word, try again
+            }
+        }
+        if (added.incrementAndGet() == capacity) {
+            rotate();
+        }
+    }
+
+    private synchronized void rotate() {
+        previous = current;
+        current = new AtomicLongArray(previous.length());
+        added.set(0);
+    }
+
+    private boolean contains(AtomicLongArray bits, long high, long low) {
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(high, low, i);
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bit of the i-th hash function, derived from the two halves of the key by double hashing
+     */
+    private int index(long high, long low, int i) {
+        return (int) Long.remainderUnsigned(high + i * low, bitCount);
+    }
+}
@@ -0,0 +1,53 @@
+package com.deadside.bot.utils;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embeds packed into one Discord message
+ * A message holds up to ten embeds with at most 6000 characters between them, so a busy feed sent in
+ * batches makes a tenth of the API calls it would with one message per embed. Embeds keep the order
+ * they were added in.
+ */
+public final class EmbedBatch {
+    private final List<MessageEmbed> embeds = new ArrayList<>(Message.MAX_EMBED_COUNT);
+    private int length;
+
+    /**
+     * @return True if the embed can join the message without passing Discord's limits
+     */
+    public boolean fits(MessageEmbed embed) {
+        return embeds.size() < Message.MAX_EMBED_COUNT
+                && length + embed.getLength() <= MessageEmbed.EMBED_MAX_LENGTH_BOT;
+    }
+
+    /**
+     * Add an embed, which must fit
+     */
+    public void add(MessageEmbed embed) {
+        embeds.add(embed);
+        length += embed.getLength();
+    }
+
+    /**
+     * @return True if no more embeds can join the message
+     */
+    public boolean isFull() {
+        return embeds.size() == Message.MAX_EMBED_COUNT;
+    }
+
+    public boolean isEmpty() {
+        return embeds.isEmpty();
+    }
+
+    public int size() {
+        return embeds.size();
+    }
+
+    public List<MessageEmbed> getEmbeds() {
+        return embeds;
+    }
+}
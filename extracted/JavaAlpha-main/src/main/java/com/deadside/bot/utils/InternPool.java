@@ -0,0 +1,129 @@
+package com.deadside.bot.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, thread-safe pool of canonical strings with small integer ids
+ * Strings are kept in an open-addressed table that is never cleared, so a string keeps its id for the
+ * life of the pool; an owner that needs room replaces the whole pool, and ids are only meaningful
+ * together with the pool that gave them out. A string can be looked up from a range of characters
+ * without creating it first, so text that is already pooled costs no allocation. Once the pool holds its
+ * capacity, new strings are returned as they are and get no id.
+ */
+public class InternPool {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<String> slots;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param capacity Number of distinct strings the pool holds
+     */
+    public InternPool(int capacity) {
+        this.capacity = capacity;
+        // At most half the slots are used, so probes stay short and always reach an empty slot
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.mask = tableSize - 1;
+        this.slots = new AtomicReferenceArray<>(tableSize);
+    }
+
+    /**
+     * Get the canonical instance of a string
+     * @return The pooled instance, or the string itself if it is now pooled or the pool is full
+     */
+    public String intern(String text) {
+        if (text == null) {
+            return null;
+        }
+        int slot = find(text, 0, text.length(), text);
+        return slot < 0 ? text : slots.get(slot);
+    }
+
+    /**
+     * Get the canonical instance of a range of characters
+     * @param text The text holding the range
+     * @param start Start of the range, inclusive
+     * @param end End of the range, exclusive
+     * @return The pooled instance, or a new string if the pool is full
+     */
+    public String intern(String text, int start, int end) {
+        int slot = find(text, start, end, null);
+        return slot < 0 ? text.substring(start, end) : slots.get(slot);
+    }
+
+    /**
+     * Get the id of a string, pooling it if needed
+     * @return The id, below {@link #idLimit()}, or -1 if the string is null or the pool is full
+     */
+    public int idOf(String text) {
+        return text == null ? -1 : find(text, 0, text.length(), text);
+    }
+
+    /**
+     * Get the string with an id
+     * @return The string, or null if no string has the id
+     */
+    public String get(int id) {
+        return id < 0 || id >= slots.length() ? null : slots.get(id);
+    }
+
+    /**
+     * @return Upper bound of the ids, so arrays of this length can be indexed by id
+     */
+    public int idLimit() {
+        return slots.length();
+    }
+
+    /**
+     * @return Number of pooled strings
+     */
+    public int size() {
+        return Math.min(size.get(), capacity);
+    }
+
+    /**
+     * @return True if the pool holds its capacity and returns new strings as they are
+     */
+    public boolean isFull() {
+        return size.get() >= capacity;
+    }
+
+    /**
+     * Find the slot of a range of characters, adding it if it is not pooled
+     * @param whole The range as a string if the caller has one, stored instead of a copy
+     * @return The slot, or -1 if the range is not pooled and the pool is full
+     */
+    private int find(String text, int start, int end, String whole) {
+        int slot = hash(text, start, end) & mask;
+        while (true) {
+            String pooled = slots.get(slot);
+            if (pooled == null) {
+                if (size.incrementAndGet() > capacity) {
+                    size.decrementAndGet();
+                    return -1;
+                }
+                String value = whole != null ? whole : text.substring(start, end);
+                if (slots.compareAndSet(slot, null, value)) {
+                    return slot;
+                }
+                // Another thread took the slot first, check whether it added the same string
+                size.decrementAndGet();
+                pooled = slots.get(slot);
+            }
+            if (pooled.length() == end - start && pooled.regionMatches(0, text, start, end - start)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        // Spread the high bits into the low ones used for the slot
+        return h ^ (h >>> 16);
+    }
+}
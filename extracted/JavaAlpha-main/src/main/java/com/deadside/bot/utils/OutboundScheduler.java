@@ -0,0 +1,375 @@
+package com.deadside.bot.utils;
+
+import com.deadside.bot.config.Config;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the bot's notification embeds, most important first and within Discord's rate limits
+ * Each channel queues its embeds in one lane per priority and has at most one message in flight, so the
+ * backlog stays here, where kills can overtake join and leave notices, instead of in JDA's first-come
+ * queue. Each message is an {@link EmbedBatch} filled from the highest lanes first, and waits the linger
+ * time when a channel was idle so more embeds can join it.
+ * Sends are paced by a token bucket per channel, matching Discord's message route limit, and by a global
+ * budget kept below Discord's global limit so interaction replies, which are not queued here, always have
+ * room. When a channel falls behind, join and leave notices are merged into one summary embed, and low
+ * priority embeds that are stale or past their lane's limit are dropped.
+ */
+public class OutboundScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundScheduler.class);
+    private static OutboundScheduler instance;
+
+    // Discord allows about five messages per five seconds in a channel
+    private static final int CHANNEL_BURST = 5;
+    private static final double CHANNEL_RATE_PER_MS = 5.0 / 5000;
+
+    /**
+     * Lanes, from the most to the least important
+     */
+    public enum Priority {
+        // Kills and deaths, never dropped for age
+        KILL(2000, 0),
+        // Airdrops, missions and other world events
+        EVENT(200, TimeUnit.MINUTES.toMillis(15)),
+        // Players joining and leaving, merged into a summary when the channel falls behind
+        PRESENCE(200, TimeUnit.MINUTES.toMillis(5));
+
+        private final int maxQueued;
+        private final long maxAgeMs;
+
+        Priority(int maxQueued, long maxAgeMs) {
+            this.maxQueued = maxQueued;
+            this.maxAgeMs = maxAgeMs;
+        }
+    }
+
+    private final Map<Long, ChannelQueue> channels = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final long lingerMs;
+    private final RateBucket global;
+
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong sentEmbeds = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private OutboundScheduler() {
+        Config config = Config.getInstance();
+        this.lingerMs = config.getEmbedLingerMs();
+        int globalRate = config.getDiscordGlobalRate();
+        this.global = new RateBucket(globalRate, globalRate / 1000.0);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "discord-outbound");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized OutboundScheduler getInstance() {
+        if (instance == null) {
+            instance = new OutboundScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Queue an embed for a channel
+     * @param channel The channel to send to
+     * @param embed The embed
+     * @param priority The lane of the embed
+     */
+    public void send(MessageChannel channel, MessageEmbed embed, Priority priority) {
+        ChannelQueue queue = channels.computeIfAbsent(channel.getIdLong(), id -> new ChannelQueue());
+        synchronized (queue) {
+            queue.channel = channel;
+            ArrayDeque<Item> lane = queue.lanes.get(priority.ordinal());
+            lane.addLast(new Item(embed, System.currentTimeMillis(), 1, false));
+            if (lane.size() > priority.maxQueued) {
+                lane.removeFirst();
+                dropped.incrementAndGet();
+            }
+
+            // A full message goes out right away, otherwise more embeds get a moment to join it
+            boolean full = queue.size() == Message.MAX_EMBED_COUNT;
+            if (!queue.inFlight && (!queue.scheduled || full)) {
+                schedule(queue, full ? 0 : lingerMs);
+            }
+        }
+    }
+
+    /**
+     * Summarize what was sent, merged and dropped, for logs
+     */
+    public String describe() {
+        int queued = 0;
+        for (ChannelQueue queue : channels.values()) {
+            synchronized (queue) {
+                queued += queue.size();
+            }
+        }
+        return String.format("%d messages with %d embeds sent, %d queued in %d channels, %d merged, %d dropped",
+                sentMessages.get(), sentEmbeds.get(), queued, channels.size(), coalesced.get(), dropped.get());
+    }
+
+    /**
+     * Stop pacing and hand everything still queued to JDA, used when shutting down
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (ChannelQueue queue : channels.values()) {
+            synchronized (queue) {
+                EmbedBatch batch;
+                while (!(batch = take(queue)).isEmpty()) {
+                    try {
+                        queue.channel.sendMessageEmbeds(batch.getEmbeds()).queue(null, error ->
+                                logger.error("Failed to send embeds to channel {}: {}", queue.channel.getId(), error.getMessage()));
+                    } catch (Exception e) {
+                        // Usually missing permissions, the channel's other embeds would fail the same way
+                        logger.error("Failed to send embeds to channel {}: {}", queue.channel.getId(), e.getMessage());
+                        break;
+                    }
+                }
+            }
+        }
+        logger.info("Outbound Discord messages at shutdown: {}", describe());
+    }
+
+    /**
+     * Run a channel's pump after a delay
+     * Must be called holding the queue's lock
+     */
+    private void schedule(ChannelQueue queue, long delayMs) {
+        queue.scheduled = true;
+        try {
+            scheduler.schedule(() -> pump(queue), delayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Shutting down, the remaining embeds are sent by shutdown
+            queue.scheduled = false;
+        }
+    }
+
+    /**
+     * Send the next message of a channel if its rate limits allow, or come back when they will
+     */
+    private void pump(ChannelQueue queue) {
+        EmbedBatch batch;
+        MessageChannel channel;
+        synchronized (queue) {
+            queue.scheduled = false;
+            if (queue.inFlight || queue.size() == 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long wait = Math.max(queue.bucket.delay(now), global.delay(now));
+            if (wait > 0) {
+                schedule(queue, wait);
+                return;
+            }
+            batch = take(queue);
+            if (batch.isEmpty()) {
+                return;
+            }
+            queue.bucket.acquire(now);
+            global.acquire(now);
+            queue.inFlight = true;
+            channel = queue.channel;
+        }
+
+        int count = batch.size();
+        try {
+            channel.sendMessageEmbeds(batch.getEmbeds()).queue(
+                    success -> {
+                        sentMessages.incrementAndGet();
+                        sentEmbeds.addAndGet(count);
+                        logger.debug("Sent {} embed(s) to channel {}", count, channel.getId());
+                        done(queue);
+                    },
+                    error -> {
+                        logger.error("Failed to send {} embed(s) to channel {}: {}", count, channel.getId(), error.getMessage());
+                        done(queue);
+                    }
+            );
+        } catch (Exception e) {
+            // JDA checks permissions before queueing, and neither callback runs when that fails
+            logger.error("Failed to send {} embed(s) to channel {}: {}", count, channel.getId(), e.getMessage());
+            done(queue);
+        }
+    }
+
+    /**
+     * A channel's message went out, send the next one when the channel has more queued
+     */
+    private void done(ChannelQueue queue) {
+        synchronized (queue) {
+            queue.inFlight = false;
+            if (queue.size() > 0 && !queue.scheduled) {
+                schedule(queue, 0);
+            }
+        }
+    }
+
+    /**
+     * Take the embeds of a channel's next message, highest lanes first
+     * Must be called holding the queue's lock
+     */
+    private EmbedBatch take(ChannelQueue queue) {
+        long now = System.currentTimeMillis();
+        for (Priority priority : Priority.values()) {
+            ArrayDeque<Item> lane = queue.lanes.get(priority.ordinal());
+            while (priority.maxAgeMs > 0 && !lane.isEmpty() && now - lane.peekFirst().queuedAt > priority.maxAgeMs) {
+                lane.removeFirst();
+                dropped.incrementAndGet();
+            }
+        }
+
+        // A channel that has more than one message waiting gets its join and leave notices as a summary
+        ArrayDeque<Item> presence = queue.lanes.get(Priority.PRESENCE.ordinal());
+        if (presence.size() > 1 && queue.size() > Message.MAX_EMBED_COUNT) {
+            Item summary = summarize(presence);
+            coalesced.addAndGet(presence.size() - 1);
+            presence.clear();
+            presence.addLast(summary);
+        }
+
+        EmbedBatch batch = new EmbedBatch();
+        for (ArrayDeque<Item> lane : queue.lanes) {
+            while (!lane.isEmpty() && !batch.isFull()) {
+                MessageEmbed embed = lane.peekFirst().embed;
+                if (!batch.fits(embed)) {
+                    return batch;
+                }
+                lane.removeFirst();
+                batch.add(embed);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Merge queued notices into one embed listing each of them
+     */
+    private static Item summarize(ArrayDeque<Item> items) {
+        StringBuilder description = new StringBuilder();
+        int total = 0;
+        int listed = 0;
+        for (Item item : items) {
+            total += item.count;
+        }
+        for (Item item : items) {
+            // An earlier summary already lists its notices line by line
+            String text = item.embed.getDescription() != null ? item.embed.getDescription() : item.embed.getTitle();
+            String line = item.summary ? text : "• " + text;
+            if (description.length() + line.length() + 32 > MessageEmbed.DESCRIPTION_MAX_LENGTH) {
+                break;
+            }
+            description.append(line).append('\n');
+            listed += item.count;
+        }
+        if (listed < total) {
+            description.append("… and ").append(total - listed).append(" more");
+        }
+
+        MessageEmbed last = items.peekLast().embed;
+        EmbedBuilder summary = new EmbedBuilder()
+                .setTitle("Player Activity (" + total + ")")
+                .setDescription(description.toString().trim())
+                .setColor(Color.GRAY);
+        if (last.getFooter() != null) {
+            summary.setFooter(last.getFooter().getText(), null);
+        }
+        return new Item(summary.build(), items.peekFirst().queuedAt, total, true);
+    }
+
+    /**
+     * Token bucket: a burst of tokens that refill at a steady rate
+     */
+    private static final class RateBucket {
+        private final double capacity;
+        private final double ratePerMs;
+        private double tokens;
+        private long updatedAt = System.currentTimeMillis();
+
+        RateBucket(double capacity, double ratePerMs) {
+            this.capacity = capacity;
+            this.ratePerMs = ratePerMs;
+            this.tokens = capacity;
+        }
+
+        /**
+         * @return Milliseconds until a token is available, 0 if one is now
+         */
+        synchronized long delay(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / ratePerMs);
+        }
+
+        synchronized void acquire(long now) {
+            refill(now);
+            tokens -= 1;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * ratePerMs);
+            updatedAt = now;
+        }
+    }
+
+    /**
+     * The lanes of one channel and its message in flight
+     */
+    private static final class ChannelQueue {
+        private final List<ArrayDeque<Item>> lanes = new ArrayList<>(Priority.values().length);
+        private final RateBucket bucket = new RateBucket(CHANNEL_BURST, CHANNEL_RATE_PER_MS);
+        private MessageChannel channel;
+        private boolean scheduled;
+        private boolean inFlight;
+
+        ChannelQueue() {
+            for (int i = 0; i < Priority.values().length; i++) {
+                lanes.add(new ArrayDeque<>());
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (ArrayDeque<Item> lane : lanes) {
+                size += lane.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * A queued embed, when it was queued and how many notices it stands for
+     */
+    private static final class Item {
+        private final MessageEmbed embed;
+        private final long queuedAt;
+        // Number of notices in the embed, more than one for a summary
+        private final int count;
+        // Whether the embed merges earlier notices
+        private final boolean summary;
+
+        Item(MessageEmbed embed, long queuedAt, int count, boolean summary) {
+            this.embed = embed;
+            this.queuedAt = queuedAt;
+            this.count = count;
+            this.summary = summary;
+        }
+    }
+}
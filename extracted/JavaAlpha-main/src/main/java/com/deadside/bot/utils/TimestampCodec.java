@@ -0,0 +1,219 @@
+package com.deadside.bot.utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe codec for the fixed-width timestamps written by Deadside servers
+ * Handles yyyy/MM/dd-HH:mm:ss (killfeed), yyyy.MM.dd-HH.mm.ss (death logs) and
+ * [yyyy.MM.dd-HH.mm.ss:SSS] (Deadside.log, with or without the brackets).
+ * Digits are read straight from the characters, and the epoch value of the last date seen is
+ * cached, since consecutive lines almost always share their date.
+ */
+public final class TimestampCodec {
+    public static final TimestampCodec UTC = new TimestampCodec(ZoneOffset.UTC);
+
+    private static final Map<ZoneId, TimestampCodec> codecs = new ConcurrentHashMap<>();
+
+    // yyyy.MM.dd-HH.mm.ss
+    private static final int SECONDS_LENGTH = 19;
+    // yyyy.MM.dd-HH.mm.ss:SSS
+    private static final int MILLIS_LENGTH = 23;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private static final DateTimeFormatter SECONDS_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd-HH.mm.ss");
+    private static final DateTimeFormatter MILLIS_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd-HH.mm.ss:SSS");
+
+    private final ZoneId zone;
+    // Last date parsed, replaced as a whole so readers never see a torn value
+    private volatile Day lastDay;
+
+    private TimestampCodec(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Get the codec for timestamps written in a time zone
+     */
+    public static TimestampCodec forZone(ZoneId zone) {
+        if (zone.equals(ZoneOffset.UTC)) {
+            return UTC;
+        }
+        return codecs.computeIfAbsent(zone, TimestampCodec::new);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Parse a timestamp
+     * @param text The timestamp
+     * @return Epoch milliseconds, or -1 if the text is not a valid timestamp
+     */
+    public long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parse a timestamp embedded in a longer text
+     * @param text Text containing the timestamp
+     * @param start Index of the first character of the timestamp
+     * @param end Index just past the timestamp
+     * @return Epoch milliseconds, or -1 if the range is not a valid timestamp
+     */
+    public long parse(CharSequence text, int start, int end) {
+        if (end - start == MILLIS_LENGTH + 2 && text.charAt(start) == '[' && text.charAt(end - 1) == ']') {
+            start++;
+            end--;
+        }
+        int length = end - start;
+        if (length != SECONDS_LENGTH && length != MILLIS_LENGTH) {
+            return -1;
+        }
+
+        char dateSeparator = text.charAt(start + 4);
+        char timeSeparator = text.charAt(start + 13);
+        if ((dateSeparator != '.' && dateSeparator != '/') || text.charAt(start + 7) != dateSeparator
+                || text.charAt(start + 10) != '-'
+                || (timeSeparator != '.' && timeSeparator != ':') || text.charAt(start + 16) != timeSeparator) {
+            return -1;
+        }
+
+        int millis = 0;
+        if (length == MILLIS_LENGTH) {
+            millis = text.charAt(start + 19) == ':' ? digits(text, start + 20, 3) : -1;
+            if (millis < 0) {
+                return -1;
+            }
+        }
+
+        int hour = digits(text, start + 11, 2);
+        int minute = digits(text, start + 14, 2);
+        int second = digits(text, start + 17, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        long timeOfDay = ((hour * 60L + minute) * 60 + second) * 1000 + millis;
+
+        int year = digits(text, start, 4);
+        int month = digits(text, start + 5, 2);
+        int day = digits(text, start + 8, 2);
+        int key = year * 10_000 + month * 100 + day;
+
+        Day cached = lastDay;
+        if (cached == null || cached.key != key) {
+            if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+                return -1;
+            }
+            cached = computeDay(key, year, month, day);
+            lastDay = cached;
+        }
+
+        if (!cached.fixedOffset) {
+            // The offset changes during this day, let the zone rules decide
+            LocalDateTime dateTime = LocalDateTime.of(year, month, day, hour, minute, second, millis * 1_000_000);
+            return dateTime.atZone(zone).toInstant().toEpochMilli();
+        }
+        return cached.midnight + timeOfDay;
+    }
+
+    /**
+     * Format a time as yyyy.MM.dd-HH.mm.ss, as written in death logs
+     * @param epochMillis Epoch milliseconds
+     * @return The timestamp, or an empty string if the time is unknown (negative)
+     */
+    public String format(long epochMillis) {
+        return epochMillis < 0 ? "" : SECONDS_FORMAT.format(Instant.ofEpochMilli(epochMillis).atZone(zone));
+    }
+
+    /**
+     * Format a time as yyyy.MM.dd-HH.mm.ss:SSS, as written in Deadside.log
+     * @param epochMillis Epoch milliseconds
+     * @return The timestamp, or an empty string if the time is unknown (negative)
+     */
+    public String formatWithMillis(long epochMillis) {
+        return epochMillis < 0 ? "" : MILLIS_FORMAT.format(Instant.ofEpochMilli(epochMillis).atZone(zone));
+    }
+
+    private Day computeDay(int key, int year, int month, int day) {
+        long utcMidnight = epochDay(year, month, day) * MILLIS_PER_DAY;
+        if (zone instanceof ZoneOffset) {
+            return new Day(key, utcMidnight - ((ZoneOffset) zone).getTotalSeconds() * 1000L, true);
+        }
+
+        ZoneRules rules = zone.getRules();
+        LocalDate date = LocalDate.of(year, month, day);
+        ZoneOffset startOffset = rules.getOffset(LocalDateTime.of(date, LocalTime.MIN));
+        ZoneOffset endOffset = rules.getOffset(LocalDateTime.of(date, LocalTime.MAX));
+        return new Day(key, utcMidnight - startOffset.getTotalSeconds() * 1000L, startOffset.equals(endOffset));
+    }
+
+    /**
+     * Days since 1970-01-01 of a date in the proleptic Gregorian calendar
+     */
+    private static long epochDay(int year, int month, int day) {
+        // Count years from March so the leap day falls at the end of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Parse a run of decimal digits
+     * @return The value, or -1 if a character is not a digit
+     */
+    private static int digits(CharSequence text, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Epoch value of a date's local midnight
+     */
+    private static final class Day {
+        private final int key;
+        private final long midnight;
+        // False if a daylight saving transition falls on this date
+        private final boolean fixedOffset;
+
+        Day(int key, long midnight, boolean fixedOffset) {
+            this.key = key;
+            this.midnight = midnight;
+            this.fixedOffset = fixedOffset;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.deadside.bot;
+
+import com.deadside.bot.events.GameEvent;
+import com.deadside.bot.events.LogSource;
+import com.deadside.bot.parsers.ChunkedLogParser;
+import com.deadside.bot.parsers.LogEventClassifier;
+import com.deadside.bot.sftp.LineReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark of the single-pass log classifier against the per-pattern regex chain it replaced,
+ * and of the chunked parallel file parser against a sequential pass over the same file
+ * Usage: LogClassifierBenchmark [path to Deadside.log], run from the test classes so it stays out of the bot's jar
+ * Without a log file, a synthetic log with the usual mix of noise and event lines is used.
+ */
+public class LogClassifierBenchmark {
+
+    // The patterns DeadsideLogParser used to try on every line, in the same order
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("\\[(\\d{4}\\.\\d{2}\\.\\d{2}-\\d{2}\\.\\d{2}\\.\\d{2}:\\d{3})\\]\\[\\s*\\d+\\]");
+    private static final Pattern[] EVENT_PATTERNS = {
+            Pattern.compile("LogSFPS: \\[Login\\] Player (.+?) connected"),
+            Pattern.compile("LogSFPS: \\[Logout\\] Player (.+?) disconnected"),
+            Pattern.compile("LogSFPS: \\[Kill\\] (.+?) killed (.+?) with (.+?) at distance (\\d+)"),
+            Pattern.compile("LogSFPS: \\[Death\\] (.+?) died from (.+?)"),
+            Pattern.compile("LogSFPS: AirDrop switched to (\\w+)"),
+            Pattern.compile("LogSFPS: Helicopter crash spawned at position (.+)"),
+            Pattern.compile("LogSFPS: Trader event started at (.+)"),
+            Pattern.compile("LogSFPS: Mission (.+?) switched to (\\w+)")
+    };
+
+    private static final LogEventClassifier CLASSIFIER = new LogEventClassifier();
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final long CHUNK_SIZE = 4L * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("======= LOG CLASSIFIER BENCHMARK =======");
+
+        Path path = Paths.get(args.length > 0 ? args[0] : "attached_assets/Deadside.log");
+        List<String> lines;
+        if (Files.exists(path)) {
+            lines = Files.readAllLines(path);
+            System.out.println("Log file: " + path + " (" + lines.size() + " lines)");
+        } else {
+            lines = syntheticLog(200_000);
+            System.out.println("Log file " + path + " not found, using " + lines.size() + " synthetic lines");
+        }
+
+        int regexEvents = regexPass(lines);
+        int classifierEvents = classifierPass(lines);
+        System.out.println("Events found: regex " + regexEvents + ", classifier " + classifierEvents);
+        if (regexEvents != classifierEvents) {
+            System.out.println("WARNING: the two passes disagree");
+        }
+
+        double regexNanos = measure(lines, true);
+        double classifierNanos = measure(lines, false);
+        System.out.printf("Regex chain: %.1f ns/line%n", regexNanos);
+        System.out.printf("Classifier:  %.1f ns/line%n", classifierNanos);
+        System.out.printf("Speedup:     %.1fx%n", regexNanos / classifierNanos);
+        
+        benchmarkChunked(path, lines);
+    }
+
+    /**
+     * Compare decoding a whole file on one thread with the chunked parallel parser
+     */
+    private static void benchmarkChunked(Path path, List<String> lines) throws IOException {
+        Path file = path;
+        if (!Files.exists(file)) {
+            file = Files.createTempFile("deadside-benchmark", ".log");
+            file.toFile().deleteOnExit();
+            // Repeat the synthetic log so the file spans several chunks
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                for (int i = 0; i < 10; i++) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+
+        ChunkedLogParser chunked = new ChunkedLogParser(ForkJoinPool.commonPool(), CHUNK_SIZE);
+        long sequentialEvents = sequentialFilePass(file);
+        long chunkedEvents = chunked.parse(file, LogSource.SERVER_LOG).size();
+        System.out.println("File pass events: sequential " + sequentialEvents + ", chunked " + chunkedEvents
+                + " (" + Files.size(file) / 1024 / 1024 + " MB, "
+                + ForkJoinPool.commonPool().getParallelism() + " pool threads)");
+        if (sequentialEvents != chunkedEvents) {
+            System.out.println("WARNING: the two passes disagree");
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sequentialFilePass(file);
+            chunked.parse(file, LogSource.SERVER_LOG);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sequentialFilePass(file);
+        }
+        double sequentialMillis = (System.nanoTime() - start) / 1e6 / MEASURED_ROUNDS;
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            chunked.parse(file, LogSource.SERVER_LOG);
+        }
+        double chunkedMillis = (System.nanoTime() - start) / 1e6 / MEASURED_ROUNDS;
+        System.out.printf("Sequential file pass: %.1f ms%n", sequentialMillis);
+        System.out.printf("Chunked file pass:    %.1f ms%n", chunkedMillis);
+        System.out.printf("Speedup:              %.1fx%n", sequentialMillis / chunkedMillis);
+    }
+
+    private static long sequentialFilePass(Path file) throws IOException {
+        // Keep the events, as the chunked parser does
+        List<GameEvent> events = new ArrayList<>();
+        try (LineReader reader = new LineReader(Files.newInputStream(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                GameEvent event = CLASSIFIER.decode(line);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events.size();
+    }
+
+    private static double measure(List<String> lines, boolean regex) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(lines, regex);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            run(lines, regex);
+        }
+        return (System.nanoTime() - start) / (double) MEASURED_ROUNDS / lines.size();
+    }
+
+    private static int run(List<String> lines, boolean regex) {
+        return regex ? regexPass(lines) : classifierPass(lines);
+    }
+
+    private static int regexPass(List<String> lines) {
+        int events = 0;
+        for (String line : lines) {
+            Matcher timestampMatcher = TIMESTAMP_PATTERN.matcher(line);
+            if (timestampMatcher.find()) {
+                timestampMatcher.group(1);
+            }
+            for (Pattern pattern : EVENT_PATTERNS) {
+                Matcher matcher = pattern.matcher(line);
+                if (matcher.find()) {
+                    events++;
+                    break;
+                }
+            }
+        }
+        return events;
+    }
+
+    private static int classifierPass(List<String> lines) {
+        int events = 0;
+        for (String line : lines) {
+            GameEvent event = CLASSIFIER.decode(line);
+            // The regex chain only knows the events that used to be notified
+            if (event != null && !(event instanceof GameEvent.Vehicle)
+                    && !(event instanceof GameEvent.MissionRespawn) && !(event instanceof GameEvent.MissionFail)) {
+                events++;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Build a log where most lines are engine noise, as in a real Deadside.log
+     */
+    private static List<String> syntheticLog(int count) {
+        String[] noise = {
+                "LogNet: UChannel::ReceivedSequencedBunch: Bunch.bOpen. Channel: 12 Reliable: 1 ChIndex: 12",
+                "LogSFPS: [ASFPSGameMode::NewVehicle_Add] Add vehicle BP_Car_Sedan_C_2147473901 Total 34",
+                "LogSFPS: Mission GA_Military_02_Mis1 will respawn in 1800",
+                "LogStreaming: Display: Flushing async loaders.",
+                "LogCharacterMovement: Warning: CharacterMovement speed too high for player",
+                "LogSFPS: [ASFPSVehicleSpawnPoint] Spawned vehicle BP_Quad_C at X=1204.0 Y=-3320.5 Z=20.1"
+        };
+        String[] events = {
+                "LogSFPS: [Login] Player SnakeEyes connected",
+                "LogSFPS: [Logout] Player SnakeEyes disconnected",
+                "LogSFPS: [Kill] SnakeEyes killed Rook with AK-74 at distance 132",
+                "LogSFPS: AirDrop switched to Waiting",
+                "LogSFPS: Mission GA_Military_02_Mis1 switched to READY",
+                "LogSFPS: Helicopter crash spawned at position X=1520.3 Y=-240.8"
+        };
+
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String body = i % 20 == 0 ? events[(i / 20) % events.length] : noise[i % noise.length];
+            lines.add(String.format("[2025.04.10-%02d.%02d.%02d:%03d][%3d]%s",
+                    (i / 3600) % 24, (i / 60) % 60, i % 60, i % 1000, i % 1000, body));
+        }
+        return lines;
+    }
+}